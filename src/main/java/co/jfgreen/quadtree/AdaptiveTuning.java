@@ -0,0 +1,80 @@
+package co.jfgreen.quadtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Measures, for each leaf, how many points queries test against their shapes and how many points move out to
+// other leaves. Every few updates, leaves where testing points costs more than moving them are given smaller
+// buckets, and split beyond the tree's max depth if they're already as deep as they can go. Leaves where moving
+// points costs more get larger buckets, and their parent is offered for merging.
+public class AdaptiveTuning {
+
+    // Roughly how many point tests it costs to move one point to another leaf
+    public static int RELOCATION_COST = 16;
+
+    private final int maxHalvings;
+    private final int maxDoublings;
+    private final int maxExtraDepth;
+    private final int tuningInterval;
+
+    // Buckets can shrink to a 2^maxHalvings'th and grow 2^maxDoublings times, and hotspots can split maxExtraDepth
+    // levels beyond the max depth. Leaves are tuned every tuningInterval updates.
+    public AdaptiveTuning(int maxHalvings, int maxDoublings, int maxExtraDepth, int tuningInterval) {
+        if (maxHalvings < 0 || maxDoublings < 0 || maxExtraDepth < 0) {
+            throw new IllegalArgumentException("Tuning limits must not be negative");
+        }
+        if (tuningInterval < 1) {
+            throw new IllegalArgumentException("Tuning interval must be a positive integer");
+        }
+        this.maxHalvings = maxHalvings;
+        this.maxDoublings = maxDoublings;
+        this.maxExtraDepth = maxExtraDepth;
+        this.tuningInterval = tuningInterval;
+    }
+
+    boolean isDue(int updateCount) {
+        return updateCount % tuningInterval == 0;
+    }
+
+    <T extends Point2D> void tune(Node<T> root, Consumer<Node<T>> coarsen) {
+        List<Node<T>> leaves = new ArrayList<>();
+        root.forEachLeaf(leaves::add);
+        // Each parent is coarsened at most once a pass, however many of its leaves ask for it
+        Set<Node<T>> coarsenedParents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node<T> leaf : leaves) {
+            long tested = leaf.takePointsTested();
+            long movedCost = (long) leaf.takePointsMovedOut() * RELOCATION_COST;
+            // Leaves merged away earlier in this pass are no longer part of the tree
+            if (!leaf.isAttached()) {
+                continue;
+            }
+            if (tested > 2 * movedCost) {
+                refine(leaf);
+            } else if (movedCost > 2 * tested) {
+                leaf.getParent().filter(coarsenedParents::add).ifPresent(parent -> coarsen(parent, coarsen));
+            }
+        }
+    }
+
+    private <T extends Point2D> void refine(Node<T> leaf) {
+        ScaledSplitPolicy policy = ScaledSplitPolicy.of(leaf.getSplitPolicy());
+        if (leaf.isAtDepthLimit() && policy.getExtraDepth() < maxExtraDepth && leaf.isDivisible()) {
+            leaf.setSplitPolicy(policy.withExtraDepth(policy.getExtraDepth() + 1));
+        } else if (policy.getScale() > -maxHalvings) {
+            leaf.setSplitPolicy(policy.withScale(policy.getScale() - 1));
+        }
+        leaf.refine();
+    }
+
+    private <T extends Point2D> void coarsen(Node<T> parent, Consumer<Node<T>> coarsen) {
+        ScaledSplitPolicy policy = ScaledSplitPolicy.of(parent.getSplitPolicy());
+        if (policy.getScale() < maxDoublings) {
+            parent.setSplitPolicy(policy.withScale(policy.getScale() + 1));
+        }
+        coarsen.accept(parent);
+    }
+}
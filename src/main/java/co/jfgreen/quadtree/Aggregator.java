@@ -0,0 +1,18 @@
+package co.jfgreen.quadtree;
+
+// Folds the points found by a query into a result, without collecting them
+public interface Aggregator<T> {
+
+    // Called with each point found, at the position the tree has for it
+    void accept(T point, float x, float y);
+
+    // Whether subtrees entirely inside the area may be passed to accept(Summary) rather than point by point
+    default boolean acceptsSummaries() {
+        return false;
+    }
+
+    // Only called if acceptsSummaries() returns true, so aggregators that don't override both get the points. The
+    // summary is the tree's own, so must not be changed.
+    default void accept(Summary summary) {
+    }
+}
@@ -43,6 +43,30 @@ public class BoundingBox implements Shape {
                 y <= endY;
     }
 
+    // Uses & rather than && so the loop has no branches to stop it being vectorised
+    @Override
+    public void contains(float[] xs, float[] ys, int n, boolean[] inside) {
+        for (int i = 0; i < n; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            inside[i] = x >= startX & y >= startY & x <= endX & y <= endY;
+        }
+    }
+
+    // Zero if the point is inside the box
+    public float distanceSquaredTo(float x, float y) {
+        float dx = Math.max(Math.max(startX - x, 0), x - endX);
+        float dy = Math.max(Math.max(startY - y, 0), y - endY);
+        return dx*dx + dy*dy;
+    }
+
+    // Zero if the boxes overlap or touch
+    public float distanceSquaredTo(BoundingBox other) {
+        float dx = Math.max(Math.max(other.startX - endX, 0), startX - other.endX);
+        float dy = Math.max(Math.max(other.startY - endY, 0), startY - other.endY);
+        return dx*dx + dy*dy;
+    }
+
     public BoundingBox getTopLeftQuad() {
         return new BoundingBox(startX, startY,  midX, midY);
     }
@@ -64,20 +88,30 @@ public class BoundingBox implements Shape {
     }
 
     public boolean intersects(BoundingBox other) {
+        return intersects(other.startX, other.startY, other.endX, other.endY);
+    }
+
+    @Override
+    public boolean intersects(float otherStartX, float otherStartY, float otherEndX, float otherEndY) {
         return !(
-                other.startX > endX ||
-                other.endX < startX ||
-                other.startY > endY ||
-                other.endY < startY
+                otherStartX > endX ||
+                otherEndX < startX ||
+                otherStartY > endY ||
+                otherEndY < startY
         );
     }
 
     @Override
     public boolean contains(BoundingBox other) {
+        return contains(other.startX, other.startY, other.endX, other.endY);
+    }
+
+    @Override
+    public boolean contains(float otherStartX, float otherStartY, float otherEndX, float otherEndY) {
         return
-                other.startX > startX &&
-                other.endX < endX &&
-                other.startY > startY &&
-                other.endY < endY;
+                otherStartX > startX &&
+                otherEndX < endX &&
+                otherStartY > startY &&
+                otherEndY < endY;
     }
 }
@@ -0,0 +1,33 @@
+package co.jfgreen.quadtree;
+
+// Something found by a nearest neighbour search, ordered by its distance from the search point
+class Candidate<I> implements Comparable<Candidate<I>> {
+
+    final I item;
+    final double distanceSquared;
+
+    Candidate(I item, double distanceSquared) {
+        this.item = item;
+        this.distanceSquared = distanceSquared;
+    }
+
+    // The square of a nearest neighbour search's max distance, which is compared against squared distances
+    static float maxDistanceSquared(float maxDistance) {
+        if (!(maxDistance >= 0)) {
+            throw new IllegalArgumentException("Max distance must be zero or more");
+        }
+        return maxDistance * maxDistance;
+    }
+
+    static double maxDistanceSquared(double maxDistance) {
+        if (!(maxDistance >= 0)) {
+            throw new IllegalArgumentException("Max distance must be zero or more");
+        }
+        return maxDistance * maxDistance;
+    }
+
+    @Override
+    public int compareTo(Candidate<I> other) {
+        return Double.compare(distanceSquared, other.distanceSquared);
+    }
+}
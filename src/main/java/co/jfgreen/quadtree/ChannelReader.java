@@ -0,0 +1,52 @@
+package co.jfgreen.quadtree;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Buffers sequential reads from a channel
+class ChannelReader {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean endOfChannel;
+
+    ChannelReader(ReadableByteChannel channel, int maxRecordBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(BUFFER_BYTES, maxRecordBytes));
+        buffer.flip();
+    }
+
+    // The buffer, holding at least the given number of bytes
+    ByteBuffer require(int bytes) throws IOException {
+        if (fill(bytes).remaining() < bytes) {
+            throw new QuadTreeException("Quadtree data ended unexpectedly");
+        }
+        return buffer;
+    }
+
+    // Decodes a point from the buffer, filled with up to the codec's max encoded bytes. The codec reads only the
+    // bytes it needs, so the channel may end sooner, but running out mid point means the data was cut short.
+    <T extends Point2D> T decode(PointCodec<T> codec) throws IOException {
+        try {
+            return codec.decode(fill(codec.getMaxEncodedBytes()));
+        } catch (BufferUnderflowException e) {
+            throw new QuadTreeException("Quadtree data ended unexpectedly");
+        }
+    }
+
+    // The buffer, holding at least the given number of bytes unless the channel ends first
+    ByteBuffer fill(int bytes) throws IOException {
+        if (buffer.remaining() < bytes && !endOfChannel) {
+            buffer.compact();
+            while (buffer.position() < bytes && !endOfChannel) {
+                endOfChannel = channel.read(buffer) < 0;
+            }
+            buffer.flip();
+        }
+        return buffer;
+    }
+}
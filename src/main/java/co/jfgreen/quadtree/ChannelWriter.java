@@ -0,0 +1,35 @@
+package co.jfgreen.quadtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Buffers sequential writes to a channel
+class ChannelWriter {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    ChannelWriter(WritableByteChannel channel, int maxRecordBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(BUFFER_BYTES, maxRecordBytes));
+    }
+
+    // The buffer, with room for at least the given number of bytes
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
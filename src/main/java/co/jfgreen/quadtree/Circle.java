@@ -9,43 +9,81 @@ public class Circle implements Shape {
     public Circle(float x, float y, float radius) {
         this.x = x;
         this.y = y;
-        this.radius = radius;
+        this.radius = validRadius(radius);
+    }
+
+    // Distances are compared squared, which would let a negative radius match points, so one is rejected
+    static float validRadius(float radius) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must be zero or more");
+        }
+        return radius;
     }
 
 
     @Override
     public boolean contains(float x, float y) {
-        float dx = Math.abs(this.x - x);
-        float dy = Math.abs(this.y - y);
-        float distanceFromCentre = (float) Math.sqrt((dx*dx) + (dy*dy));
-        return distanceFromCentre <= radius;
+        return contains(this.x, this.y, radius, x, y);
     }
 
 
+    @Override
+    public void contains(float[] xs, float[] ys, int n, boolean[] inside) {
+        contains(x, y, radius, xs, ys, n, inside);
+    }
+
     @Override
     public boolean intersects(BoundingBox box) {
+        return intersects(box.startX, box.startY, box.endX, box.endY);
+    }
 
-        float midpointDistanceX = Math.abs(x - box.midX);
-        float midpointDistanceY = Math.abs(y - box.midY);
+    @Override
+    public boolean contains(BoundingBox box) {
+        return contains(box.startX, box.startY, box.endX, box.endY);
+    }
 
-        if(midpointDistanceX > (box.getWidth()/2 + radius)) return false;
-        if(midpointDistanceY > (box.getHeight()/2 + radius)) return false;
+    @Override
+    public boolean intersects(float startX, float startY, float endX, float endY) {
+        return intersects(x, y, radius, startX, startY, endX, endY);
+    }
 
-        if(midpointDistanceX <= (box.getWidth()/2)) return true;
-        if(midpointDistanceY <= (box.getHeight()/2)) return true;
+    @Override
+    public boolean contains(float startX, float startY, float endX, float endY) {
+        return contains(x, y, radius, startX, startY, endX, endY);
+    }
 
-        float cornerDistanceSquared = (float) (Math.pow((midpointDistanceX - box.getWidth()/2),2) +
-                                               Math.pow((midpointDistanceY - box.getHeight()/2),2));
+    // The static forms let ReusableCircle share this maths without having to be a Circle itself.
+    // Distances are compared squared, saving a square root per point.
 
-        return cornerDistanceSquared <= Math.pow(radius,2);
+    static boolean contains(float circleX, float circleY, float radius, float x, float y) {
+        float dx = circleX - x;
+        float dy = circleY - y;
+        return dx*dx + dy*dy <= radius*radius;
     }
 
-    @Override
-    public boolean contains(BoundingBox box) {
-        return
-                contains(box.startX, box.startY) &&
-                contains(box.endX, box.startY) &&
-                contains(box.startX, box.endY) &&
-                contains(box.endX, box.endY);
+    static void contains(float circleX, float circleY, float radius,
+                         float[] xs, float[] ys, int n, boolean[] inside) {
+        float radiusSquared = radius*radius;
+        for (int i = 0; i < n; i++) {
+            float dx = circleX - xs[i];
+            float dy = circleY - ys[i];
+            inside[i] = dx*dx + dy*dy <= radiusSquared;
+        }
+    }
+
+    // True if the point of the box nearest to the centre of the circle is inside the circle
+    static boolean intersects(float circleX, float circleY, float radius,
+                              float startX, float startY, float endX, float endY) {
+        float dx = Math.max(Math.max(startX - circleX, 0), circleX - endX);
+        float dy = Math.max(Math.max(startY - circleY, 0), circleY - endY);
+        return dx*dx + dy*dy <= radius*radius;
+    }
+
+    // True if the corner of the box furthest from the centre of the circle is inside the circle
+    static boolean contains(float circleX, float circleY, float radius,
+                            float startX, float startY, float endX, float endY) {
+        float dx = Math.max(circleX - startX, endX - circleX);
+        float dy = Math.max(circleY - startY, endY - circleY);
+        return dx*dx + dy*dy <= radius*radius;
     }
 }
@@ -0,0 +1,296 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// A tree that can be queried from many threads while it is being updated. The area is split into a grid of
+// stripes (4, 16, 64...), the top few levels of quadrants, each holding its own QuadTree behind its own read write
+// lock. Queries only lock the stripes they touch, so they only wait on updates to those stripes.
+// Consumers are called while a stripe is read locked, so must not modify the tree.
+public class ConcurrentQuadTree<T extends Point2D> implements SpatialIndex<T> {
+
+    public static int DEFAULT_STRIPE_LEVELS = 2;
+
+    private final BoundingBox bounds;
+    private final List<Stripe<T>> stripes = new ArrayList<>();
+    private final Map<T, Stripe<T>> stripeOfPoint = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
+
+    private static class Stripe<T extends Point2D> {
+
+        private final int number;
+        private final BoundingBox bounds;
+        private final QuadTree<T> tree;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Stripe(int number, BoundingBox bounds, int maxBucketSize, int maxDepth) {
+            this.number = number;
+            this.bounds = bounds;
+            this.tree = new QuadTree<>(bounds.startX, bounds.startY, bounds.getWidth(), bounds.getHeight(),
+                    maxBucketSize, maxDepth);
+        }
+    }
+
+    public ConcurrentQuadTree(float x, float y, float width, float height) {
+        this(x, y, width, height, QuadTree.DEFAULT_MAX_BUCKET_SIZE, QuadTree.DEFAULT_MAX_DEPTH, DEFAULT_STRIPE_LEVELS);
+    }
+
+    // The stripes take up the first stripeLevels of the maxDepth levels
+    public ConcurrentQuadTree(float x, float y, float width, float height,
+                              int maxBucketSize, int maxDepth, int stripeLevels) {
+        validatePositive(stripeLevels, "Stripe levels");
+        validatePositive(maxDepth - stripeLevels, "Max tree depth less stripe levels");
+        bounds = new BoundingBox(x, y, x + width, y + height);
+        createStripes(bounds, stripeLevels, maxBucketSize, maxDepth - stripeLevels);
+    }
+
+    private void validatePositive(int number, String name) {
+        if (number < 1) {
+            throw new IllegalArgumentException(name + " must be a positive integer");
+        }
+    }
+
+    // Split the same way as Nodes, so points on a midline go to the same stripe they would go to in a QuadTree
+    private void createStripes(BoundingBox box, int levels, int maxBucketSize, int maxDepth) {
+        if (levels == 0) {
+            stripes.add(new Stripe<>(stripes.size(), box, maxBucketSize, maxDepth));
+        } else {
+            createStripes(box.getTopLeftQuad(), levels - 1, maxBucketSize, maxDepth);
+            createStripes(box.getTopRightQuad(), levels - 1, maxBucketSize, maxDepth);
+            createStripes(box.getBottomLeftQuad(), levels - 1, maxBucketSize, maxDepth);
+            createStripes(box.getBottomRightQuad(), levels - 1, maxBucketSize, maxDepth);
+        }
+    }
+
+    private Stripe<T> stripeEnclosing(T point) {
+        float x = point.getX();
+        float y = point.getY();
+        for (Stripe<T> stripe : stripes) {
+            if (stripe.bounds.contains(x, y)) {
+                return stripe;
+            }
+        }
+        return null;
+    }
+
+    // A point's entry in stripeOfPoint is only ever set, changed or removed while the stripe it names is write
+    // locked. So once that lock is held, and the entry still names the stripe, the point stays put until it's
+    // released. If the point moves stripe before the lock is taken, this tries again with its new stripe.
+    // Returns null, holding no lock, if the point isn't in the tree.
+    private Stripe<T> lockStripeHolding(T point) {
+        while (true) {
+            Stripe<T> stripe = stripeOfPoint.get(point);
+            if (stripe == null) {
+                return null;
+            }
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            if (stripeOfPoint.get(point) == stripe) {
+                return stripe;
+            }
+            lock.unlock();
+        }
+    }
+
+    private Stripe<T> lockStripeHoldingExisting(T point) {
+        Stripe<T> stripe = lockStripeHolding(point);
+        if (stripe == null) {
+            throw new QuadTreeException("Point does not exist in tree");
+        }
+        return stripe;
+    }
+
+    @Override
+    public void add(T point) {
+        Stripe<T> stripe = stripeEnclosing(point);
+        if (stripe == null) {
+            throw new IllegalArgumentException("Point is outside tree bounds.");
+        }
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            if (stripeOfPoint.putIfAbsent(point, stripe) != null) {
+                throw new QuadTreeException("Point already exists in tree");
+            }
+            stripe.tree.add(point);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(T point) {
+        Stripe<T> stripe = lockStripeHolding(point);
+        if (stripe == null) {
+            return false;
+        }
+        try {
+            stripeOfPoint.remove(point);
+            stripe.tree.remove(point);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(T point) {
+        return stripeOfPoint.containsKey(point);
+    }
+
+    @Override
+    public void moved(T point) {
+        Stripe<T> stripe = lockStripeHoldingExisting(point);
+        try {
+            stripe.tree.moved(point);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void moveTo(T point, float x, float y) {
+        Stripe<T> stripe = lockStripeHoldingExisting(point);
+        try {
+            if (stripe.bounds.contains(x, y)) {
+                stripe.tree.moveTo(point, x, y);
+            } else {
+                stripe.tree.moved(point);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    // Each stripe is updated in turn, then points that have left their stripe are moved one at a time with both
+    // stripes locked, so readers always see them in one stripe or the other.
+    @Override
+    public void update() {
+        List<T> pointsOutsideStripe = new ArrayList<>();
+        for (Stripe<T> stripe : stripes) {
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                stripe.tree.update(pointsOutsideStripe::add);
+            } finally {
+                lock.unlock();
+            }
+        }
+        pointsOutsideStripe.forEach(this::moveBetweenStripes);
+    }
+
+    @Override
+    public void updateMoved() {
+        List<T> pointsOutsideStripe = new ArrayList<>();
+        for (Stripe<T> stripe : stripes) {
+            Lock lock = stripe.lock.writeLock();
+            lock.lock();
+            try {
+                stripe.tree.updateMoved(pointsOutsideStripe::add);
+            } finally {
+                lock.unlock();
+            }
+        }
+        pointsOutsideStripe.forEach(this::moveBetweenStripes);
+    }
+
+    // Skips points removed, or already moved by another update, since their stripe's lock was released
+    private void moveBetweenStripes(T point) {
+        Stripe<T> source = stripeOfPoint.get(point);
+        if (source == null) {
+            return;
+        }
+        Stripe<T> destination = stripeEnclosing(point);
+        if (destination == null) {
+            throw new RuntimeException("No suitable ancestor for point " + point);
+        }
+        // Always lock the lower numbered stripe first, so two threads can't each hold the lock the other needs
+        Lock first = (source.number < destination.number ? source : destination).lock.writeLock();
+        Lock second = (source.number < destination.number ? destination : source).lock.writeLock();
+        first.lock();
+        second.lock();
+        try {
+            if (stripeOfPoint.replace(point, source, destination)) {
+                source.tree.remove(point);
+                destination.tree.add(point);
+            }
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    @Override
+    public void queryByPointRadius(float x, float y, float radius, Consumer<? super T> consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    // All the stripes the area touches are read locked before any are searched, in the same order writers lock
+    // them, so points moving between stripes are seen exactly once.
+    @Override
+    public void query(Shape area, Consumer<? super T> consumer) {
+        int locked = 0;
+        try {
+            for (Stripe<T> stripe : stripes) {
+                if (area.intersects(stripe.bounds)) {
+                    stripe.lock.readLock().lock();
+                }
+                locked++;
+            }
+            for (Stripe<T> stripe : stripes) {
+                if (area.intersects(stripe.bounds)) {
+                    stripe.tree.query(area, consumer);
+                }
+            }
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                Stripe<T> stripe = stripes.get(i);
+                if (area.intersects(stripe.bounds)) {
+                    stripe.lock.readLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Stripes are searched nearest first, stopping at the first that is further away than the k-th best point.
+    // Each stripe is locked in turn, so a point moving between stripes mid search may be missed.
+    @Override
+    public List<T> nearest(float x, float y, int k, float maxDistance) {
+        validatePositive(k, "Neighbour count");
+        float maxDistanceSquared = Candidate.maxDistanceSquared(maxDistance);
+        List<Stripe<T>> stripesByDistance = new ArrayList<>(stripes);
+        stripesByDistance.sort(Comparator.comparing(s -> s.bounds.distanceSquaredTo(x, y)));
+        PriorityQueue<Candidate<T>> nearest = new PriorityQueue<>(Collections.reverseOrder());
+        for (Stripe<T> stripe : stripesByDistance) {
+            double searchDistanceSquared = nearest.size() < k ? maxDistanceSquared : nearest.peek().distanceSquared;
+            if (stripe.bounds.distanceSquaredTo(x, y) > searchDistanceSquared) {
+                break;
+            }
+            Lock lock = stripe.lock.readLock();
+            lock.lock();
+            try {
+                for (Candidate<T> candidate : stripe.tree.nearestCandidates(x, y, k, maxDistance)) {
+                    nearest.add(candidate);
+                    if (nearest.size() > k) {
+                        nearest.remove();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        List<Candidate<T>> found = new ArrayList<>(nearest);
+        Collections.sort(found);
+        List<T> nearestPoints = new ArrayList<>(found.size());
+        found.forEach(c -> nearestPoints.add(c.item));
+        return nearestPoints;
+    }
+}
@@ -0,0 +1,68 @@
+package co.jfgreen.quadtree;
+
+public class DoubleBoundingBox implements DoubleShape {
+
+    public final double startX;
+    public final double startY;
+    public final double endX;
+    public final double endY;
+
+    public DoubleBoundingBox(double startX, double startY, double endX, double endY) {
+        validateDimension(startX, endX);
+        validateDimension(startY, endY);
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    private void validateDimension(double start, double end) {
+        if (!(start < end)) {
+            throw new IllegalArgumentException("Start of dimension must be after end.");
+        }
+    }
+
+    public double getWidth() {
+        return endX - startX;
+    }
+
+    public double getHeight() {
+        return endY - startY;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return contains(startX, startY, endX, endY, x, y);
+    }
+
+    @Override
+    public boolean intersects(double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+        return intersects(startX, startY, endX, endY, otherStartX, otherStartY, otherEndX, otherEndY);
+    }
+
+    @Override
+    public boolean contains(double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+        return contains(startX, startY, endX, endY, otherStartX, otherStartY, otherEndX, otherEndY);
+    }
+
+    public String toString() {
+        return String.format("From:(%f, %f), To:(%f, %f)", startX, startY, endX, endY);
+    }
+
+    // The static forms let DoubleQuadTree reuse one box between queries, like Circle's do for ReusableCircle.
+    // Edges count as inside, so a box holding a node holds every point the node could have.
+
+    static boolean contains(double startX, double startY, double endX, double endY, double x, double y) {
+        return x >= startX && y >= startY && x <= endX && y <= endY;
+    }
+
+    static boolean intersects(double startX, double startY, double endX, double endY,
+                              double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+        return otherStartX <= endX && otherEndX >= startX && otherStartY <= endY && otherEndY >= startY;
+    }
+
+    static boolean contains(double startX, double startY, double endX, double endY,
+                            double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+        return otherStartX >= startX && otherEndX <= endX && otherStartY >= startY && otherEndY <= endY;
+    }
+}
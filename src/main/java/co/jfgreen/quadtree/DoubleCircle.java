@@ -0,0 +1,61 @@
+package co.jfgreen.quadtree;
+
+public class DoubleCircle implements DoubleShape {
+
+    public final double x;
+    public final double y;
+    public final double radius;
+
+    public DoubleCircle(double x, double y, double radius) {
+        this.x = x;
+        this.y = y;
+        this.radius = validRadius(radius);
+    }
+
+    // Rejected for the same reason as in Circle, distances are compared squared
+    static double validRadius(double radius) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must be zero or more");
+        }
+        return radius;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return contains(this.x, this.y, radius, x, y);
+    }
+
+    @Override
+    public boolean intersects(double startX, double startY, double endX, double endY) {
+        return intersects(x, y, radius, startX, startY, endX, endY);
+    }
+
+    @Override
+    public boolean contains(double startX, double startY, double endX, double endY) {
+        return contains(x, y, radius, startX, startY, endX, endY);
+    }
+
+    // The static forms let DoubleQuadTree reuse one circle between queries, like Circle's do for ReusableCircle
+
+    static boolean contains(double circleX, double circleY, double radius, double x, double y) {
+        double dx = circleX - x;
+        double dy = circleY - y;
+        return dx*dx + dy*dy <= radius*radius;
+    }
+
+    // True if the point of the box nearest to the centre of the circle is inside the circle
+    static boolean intersects(double circleX, double circleY, double radius,
+                              double startX, double startY, double endX, double endY) {
+        double dx = Math.max(Math.max(startX - circleX, 0), circleX - endX);
+        double dy = Math.max(Math.max(startY - circleY, 0), circleY - endY);
+        return dx*dx + dy*dy <= radius*radius;
+    }
+
+    // True if the corner of the box furthest from the centre of the circle is inside the circle
+    static boolean contains(double circleX, double circleY, double radius,
+                            double startX, double startY, double endX, double endY) {
+        double dx = Math.max(circleX - startX, endX - circleX);
+        double dy = Math.max(circleY - startY, endY - circleY);
+        return dx*dx + dy*dy <= radius*radius;
+    }
+}
@@ -0,0 +1,7 @@
+package co.jfgreen.quadtree;
+
+// A point for DoubleQuadTree, whose coordinates need more precision than a float has
+public interface DoublePoint2D {
+    double getX();
+    double getY();
+}
@@ -0,0 +1,235 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// A LinearQuadTree with double coordinates, for worlds too large or too finely divided for floats, such as
+// geographic coordinates in metres. Node edges are grid lines worked out from the cell index, rather than by
+// halving boxes and stepping past the midline with Math.nextUp(), so they stay exact however deep the tree is.
+// Like LinearQuadTree, it can be queried from many threads at once while no thread is changing it.
+public class DoubleQuadTree<T extends DoublePoint2D> implements DoubleSpatialIndex<T> {
+
+    public static final int MAX_DEPTH = Morton.MAX_DEPTH;
+
+    private final MortonNodes.DoubleNodes nodes;
+    private final MortonSlots.DoubleCoordinates coordinates = new MortonSlots.DoubleCoordinates();
+    private final MortonPoints<T> points;
+
+    private final ScratchSpace<MortonNodes.Walk> walks;
+    private final ScratchSpace<Box> boxes = new ScratchSpace<>(Box::new);
+    private final ScratchSpace<Disc> discs = new ScratchSpace<>(Disc::new);
+
+    public DoubleQuadTree(double x, double y, double width, double height) {
+        this(x, y, width, height, QuadTree.DEFAULT_MAX_BUCKET_SIZE, QuadTree.DEFAULT_MAX_DEPTH);
+    }
+
+    public DoubleQuadTree(double x, double y, double width, double height, int maxBucketSize, int maxDepth) {
+        validatePositive(maxBucketSize, "Max bucket size");
+        validatePositive(maxDepth, "Max tree depth");
+        if (maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Max tree depth must be at most " + MAX_DEPTH);
+        }
+        if (!(width > 0) || !(height > 0)) {
+            throw new IllegalArgumentException("Start of dimension must be after end.");
+        }
+        this.nodes = MortonNodes.of(x, y, x + width, y + height, maxBucketSize, maxDepth);
+        this.points = new MortonPoints<>(nodes, coordinates, DoublePoint2D::getX, DoublePoint2D::getY);
+        this.walks = new ScratchSpace<>(nodes::newWalk);
+    }
+
+    private void validatePositive(int number, String name) {
+        if (number < 1) {
+            throw new IllegalArgumentException(name + " must be a positive integer");
+        }
+    }
+
+    @Override
+    public void add(T point) {
+        points.add(point);
+    }
+
+    @Override
+    public boolean remove(T point) {
+        return points.remove(point);
+    }
+
+    @Override
+    public boolean contains(T point) {
+        return points.contains(point);
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    @Override
+    public void moved(T point) {
+        points.moved(point);
+    }
+
+    // Points that stay inside their leaf are updated straight away, as LinearQuadTree does
+    @Override
+    public void moveTo(T point, double x, double y) {
+        points.moveTo(point, x, y);
+    }
+
+    @Override
+    public void update() {
+        points.update();
+    }
+
+    @Override
+    public void updateMoved() {
+        points.updateMoved();
+    }
+
+    public void queryByBoundingBox(double x, double y, double width, double height, Consumer<? super T> consumer) {
+        Box box = boxes.borrow();
+        try {
+            query(box.set(x, y, x + width, y + height), consumer);
+        } finally {
+            boxes.giveBack(box);
+        }
+    }
+
+    // Unlike a DoubleBoundingBox, the box may be empty
+    @Override
+    public Collection<T> queryByBoundingBox(double x, double y, double width, double height) {
+        Collection<T> foundPoints = new ArrayList<>();
+        queryByBoundingBox(x, y, width, height, foundPoints::add);
+        return foundPoints;
+    }
+
+    @Override
+    public void queryByPointRadius(double x, double y, double radius, Consumer<? super T> consumer) {
+        Disc disc = discs.borrow();
+        try {
+            query(disc.set(x, y, radius), consumer);
+        } finally {
+            discs.giveBack(disc);
+        }
+    }
+
+    @Override
+    public Collection<T> queryByPointRadius(double x, double y, double radius) {
+        Collection<T> foundPoints = new ArrayList<>();
+        queryByPointRadius(x, y, radius, foundPoints::add);
+        return foundPoints;
+    }
+
+    @Override
+    public void query(DoubleShape area, Consumer<? super T> consumer) {
+        points.ensureIndexed();
+        double[] xs = coordinates.xs;
+        double[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (walk.inside || area.contains(xs[i], ys[i])) {
+                        consumer.accept(points.pointAt(i));
+                    }
+                }
+            }
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    @Override
+    public int count(DoubleShape area) {
+        points.ensureIndexed();
+        double[] xs = coordinates.xs;
+        double[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            int count = 0;
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                if (walk.inside) {
+                    count += walk.end - walk.start;
+                    continue;
+                }
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (area.contains(xs[i], ys[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    @Override
+    public List<T> nearest(double x, double y, int k, double maxDistance) {
+        validatePositive(k, "Neighbour count");
+        return points.nearest(x, y, k, Candidate.maxDistanceSquared(maxDistance));
+    }
+
+    // Boxes and circles that can be moved, so the tree can run box and radius queries without allocating
+
+    private static class Box implements DoubleShape {
+
+        private double startX;
+        private double startY;
+        private double endX;
+        private double endY;
+
+        private Box set(double startX, double startY, double endX, double endY) {
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            return this;
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return DoubleBoundingBox.contains(startX, startY, endX, endY, x, y);
+        }
+
+        @Override
+        public boolean intersects(double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+            return DoubleBoundingBox.intersects(startX, startY, endX, endY,
+                    otherStartX, otherStartY, otherEndX, otherEndY);
+        }
+
+        @Override
+        public boolean contains(double otherStartX, double otherStartY, double otherEndX, double otherEndY) {
+            return DoubleBoundingBox.contains(startX, startY, endX, endY,
+                    otherStartX, otherStartY, otherEndX, otherEndY);
+        }
+    }
+
+    private static class Disc implements DoubleShape {
+
+        private double x;
+        private double y;
+        private double radius;
+
+        private Disc set(double x, double y, double radius) {
+            this.x = x;
+            this.y = y;
+            this.radius = DoubleCircle.validRadius(radius);
+            return this;
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return DoubleCircle.contains(this.x, this.y, radius, x, y);
+        }
+
+        @Override
+        public boolean intersects(double startX, double startY, double endX, double endY) {
+            return DoubleCircle.intersects(x, y, radius, startX, startY, endX, endY);
+        }
+
+        @Override
+        public boolean contains(double startX, double startY, double endX, double endY) {
+            return DoubleCircle.contains(x, y, radius, startX, startY, endX, endY);
+        }
+    }
+}
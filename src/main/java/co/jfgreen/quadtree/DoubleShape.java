@@ -0,0 +1,11 @@
+package co.jfgreen.quadtree;
+
+// A query area for a DoubleSpatialIndex, the double precision counterpart of Shape. Trees test their nodes
+// against an area by the edges of the nodes' boxes.
+public interface DoubleShape {
+    boolean contains(double x, double y);
+
+    boolean intersects(double startX, double startY, double endX, double endY);
+
+    boolean contains(double startX, double startY, double endX, double endY);
+}
@@ -0,0 +1,83 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// The operations of SpatialIndex for trees of points with double coordinates
+public interface DoubleSpatialIndex<T extends DoublePoint2D> {
+
+    void add(T point);
+
+    default void addAll(Collection<T> points) {
+        points.forEach(this::add);
+    }
+
+    boolean remove(T point);
+
+    boolean contains(T point);
+
+    // Marks a point to be re-homed by the next call to updateMoved()
+    void moved(T point);
+
+    // Tells the index a point is moving to (x, y), the point must report (x, y) by the next updateMoved()
+    void moveTo(T point, double x, double y);
+
+    // Queries see points where they were as of the last update
+    void update();
+
+    // Like update(), but only considers points reported through moved() or moveTo()
+    void updateMoved();
+
+    void query(DoubleShape area, Consumer<? super T> consumer);
+
+    default int count(DoubleShape area) {
+        int[] count = {0};
+        query(area, p -> count[0]++);
+        return count[0];
+    }
+
+    default void query(DoubleShape area, Collection<? super T> foundPoints) {
+        query(area, foundPoints::add);
+    }
+
+    // The points in the area as a stream, which implementations may find lazily as it is consumed
+    default Stream<T> stream(DoubleShape area) {
+        List<T> foundPoints = new ArrayList<>();
+        query(area, foundPoints);
+        return foundPoints.stream();
+    }
+
+    default Collection<T> queryByBoundingBox(double x, double y, double width, double height) {
+        Collection<T> foundPoints = new ArrayList<>();
+        query(new DoubleBoundingBox(x, y, x+width, y+height), foundPoints);
+        return foundPoints;
+    }
+
+    default Collection<T> queryByPointRadius(double x, double y, double radius) {
+        Collection<T> foundPoints = new ArrayList<>();
+        query(new DoubleCircle(x, y, radius), foundPoints);
+        return foundPoints;
+    }
+
+    void queryByPointRadius(double x, double y, double radius, Consumer<? super T> consumer);
+
+    // Runs a batch of queries, passing each point found to the consumer along with the area it was found in
+    default <S extends DoubleShape> void queryAll(List<S> areas, BiConsumer<? super S, ? super T> consumer) {
+        for (S area : areas) {
+            query(area, p -> consumer.accept(area, p));
+        }
+    }
+
+    default Optional<T> nearest(double x, double y) {
+        return nearest(x, y, 1).stream().findFirst();
+    }
+
+    default List<T> nearest(double x, double y, int k) {
+        return nearest(x, y, k, Double.POSITIVE_INFINITY);
+    }
+
+    // Up to k points no further than maxDistance from (x, y), nearest first
+    List<T> nearest(double x, double y, int k, double maxDistance);
+}
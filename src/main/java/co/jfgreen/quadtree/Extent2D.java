@@ -0,0 +1,7 @@
+package co.jfgreen.quadtree;
+
+// An item with a size, centred on its position, such as a collider or a building
+public interface Extent2D extends Point2D {
+    float getHalfWidth();
+    float getHalfHeight();
+}
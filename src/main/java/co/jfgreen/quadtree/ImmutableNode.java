@@ -1,14 +1,25 @@
 package co.jfgreen.quadtree;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
-import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableList;
 
+// Points are held with the positions they had when the state was taken, and queries use those positions, so a
+// state can be queried from any thread while the tree it came from carries on moving its points.
 public class ImmutableNode<T extends Point2D> {
 
     private final BoundingBox bounds;
-    private final Collection<T> items;
+    private final long version;
+    private final List<T> items;
+    private final float[] xs;
+    private final float[] ys;
     private final ImmutableNode<T> topLeft;
     private final ImmutableNode<T> topRight;
     private final ImmutableNode<T> bottomLeft;
@@ -19,20 +30,56 @@ public class ImmutableNode<T extends Point2D> {
                          ImmutableNode<T> topRight,
                          ImmutableNode<T> bottomLeft,
                          ImmutableNode<T> bottomRight) {
+        this(bounds, 0, items.toArray(), xsOf(items), ysOf(items), topLeft, topRight, bottomLeft, bottomRight);
+    }
+
+    // Takes ownership of the given arrays, which must not be changed afterwards
+    @SuppressWarnings("unchecked")
+    ImmutableNode(BoundingBox bounds, long version, Object[] items, float[] xs, float[] ys,
+                  ImmutableNode<T> topLeft,
+                  ImmutableNode<T> topRight,
+                  ImmutableNode<T> bottomLeft,
+                  ImmutableNode<T> bottomRight) {
         this.topLeft = topLeft;
         this.topRight = topRight;
         this.bottomLeft = bottomLeft;
         this.bottomRight = bottomRight;
-        this.items = items;
+        this.items = (List<T>) (List<?>) unmodifiableList(Arrays.asList(items));
+        this.xs = xs;
+        this.ys = ys;
         this.bounds = bounds;
+        this.version = version;
+    }
+
+    private static float[] xsOf(Collection<? extends Point2D> items) {
+        float[] xs = new float[items.size()];
+        int i = 0;
+        for (Point2D item : items) {
+            xs[i++] = item.getX();
+        }
+        return xs;
+    }
+
+    private static float[] ysOf(Collection<? extends Point2D> items) {
+        float[] ys = new float[items.size()];
+        int i = 0;
+        for (Point2D item : items) {
+            ys[i++] = item.getY();
+        }
+        return ys;
     }
 
     public BoundingBox getBounds() {
         return bounds;
     }
 
+    // The version of the tree this node was taken from when it last changed
+    public long getVersion() {
+        return version;
+    }
+
     public Collection<T> getItems() {
-        return unmodifiableCollection(items);
+        return items;
     }
 
     public boolean isEmpty() {
@@ -55,5 +102,101 @@ public class ImmutableNode<T extends Point2D> {
         return Optional.ofNullable(bottomRight);
     }
 
+    // Finds the points that were inside the area when this state was taken
+    public void query(Shape area, Consumer<? super T> consumer) {
+        Deque<ImmutableNode<T>> nodesToExplore = new ArrayDeque<>();
+        nodesToExplore.add(this);
+        while (!nodesToExplore.isEmpty()) {
+            ImmutableNode<T> node = nodesToExplore.pop();
+            if (!area.intersects(node.bounds)) {
+                continue;
+            }
+            if (area.contains(node.bounds)) {
+                node.forEachItem(consumer);
+            } else {
+                for (int i = 0; i < node.xs.length; i++) {
+                    if (area.contains(node.xs[i], node.ys[i])) {
+                        consumer.accept(node.items.get(i));
+                    }
+                }
+                node.forEachChild(nodesToExplore::push);
+            }
+        }
+    }
+
+    public List<T> query(Shape area) {
+        List<T> found = new ArrayList<>();
+        query(area, found::add);
+        return found;
+    }
+
+    // Compares two states of the same tree. Subtrees shared between them are skipped, so the cost is in proportion
+    // to how much changed rather than to the size of the tree.
+    public static <T extends Point2D> StateDiff<T> diff(ImmutableNode<T> oldState, ImmutableNode<T> newState) {
+        StateDiff<T> diff = new StateDiff<>();
+        diff(oldState, newState, diff);
+        diff.finish();
+        return diff;
+    }
+
+    private static <T extends Point2D> void diff(ImmutableNode<T> oldNode, ImmutableNode<T> newNode,
+                                                 StateDiff<T> diff) {
+        if (oldNode == newNode) {
+            return;
+        }
+        diff.changedNode(newNode);
+        if (oldNode.hasAllChildren() && newNode.hasAllChildren()) {
+            oldNode.forEachOld(diff);
+            newNode.forEachNew(diff);
+            diff(oldNode.topLeft, newNode.topLeft, diff);
+            diff(oldNode.topRight, newNode.topRight, diff);
+            diff(oldNode.bottomLeft, newNode.bottomLeft, diff);
+            diff(oldNode.bottomRight, newNode.bottomRight, diff);
+        } else {
+            oldNode.forEachOldInSubtree(diff);
+            newNode.forEachChild(child -> child.forEachNewInSubtree(diff));
+            newNode.forEachNew(diff);
+        }
+    }
+
+    private boolean hasAllChildren() {
+        return topLeft != null && topRight != null && bottomLeft != null && bottomRight != null;
+    }
+
+    private void forEachOld(StateDiff<T> diff) {
+        for (int i = 0; i < xs.length; i++) {
+            diff.oldPoint(items.get(i), xs[i], ys[i]);
+        }
+    }
+
+    private void forEachNew(StateDiff<T> diff) {
+        for (int i = 0; i < xs.length; i++) {
+            diff.newPoint(items.get(i), xs[i], ys[i]);
+        }
+    }
+
+    private void forEachOldInSubtree(StateDiff<T> diff) {
+        forEachOld(diff);
+        forEachChild(child -> child.forEachOldInSubtree(diff));
+    }
+
+    private void forEachNewInSubtree(StateDiff<T> diff) {
+        diff.changedNode(this);
+        forEachNew(diff);
+        forEachChild(child -> child.forEachNewInSubtree(diff));
+    }
+
+    private void forEachItem(Consumer<? super T> consumer) {
+        items.forEach(consumer);
+        forEachChild(child -> child.forEachItem(consumer));
+    }
+
+    private void forEachChild(Consumer<ImmutableNode<T>> consumer) {
+        for (ImmutableNode<T> child : Arrays.asList(topLeft, topRight, bottomLeft, bottomRight)) {
+            if (child != null) {
+                consumer.accept(child);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,69 @@
+package co.jfgreen.quadtree;
+
+import java.util.function.IntConsumer;
+
+// A LongQuadTree for int ids, passing them on as ints without boxing
+public class IntQuadTree {
+
+    private final LongQuadTree tree;
+
+    public IntQuadTree(float x, float y, float width, float height) {
+        tree = new LongQuadTree(x, y, width, height);
+    }
+
+    public IntQuadTree(float x, float y, float width, float height, int maxBucketSize, int maxDepth) {
+        tree = new LongQuadTree(x, y, width, height, maxBucketSize, maxDepth);
+    }
+
+    public int size() {
+        return tree.size();
+    }
+
+    public void add(int id, float x, float y) {
+        tree.add(id, x, y);
+    }
+
+    public boolean remove(int id) {
+        return tree.remove(id);
+    }
+
+    public boolean contains(int id) {
+        return tree.contains(id);
+    }
+
+    public void moveTo(int id, float x, float y) {
+        tree.moveTo(id, x, y);
+    }
+
+    public float getX(int id) {
+        return tree.getX(id);
+    }
+
+    public float getY(int id) {
+        return tree.getY(id);
+    }
+
+    public void queryByPointRadius(float x, float y, float radius, IntConsumer consumer) {
+        tree.queryByPointRadius(x, y, radius, id -> consumer.accept((int) id));
+    }
+
+    public void query(Shape area, IntConsumer consumer) {
+        tree.query(area, id -> consumer.accept((int) id));
+    }
+
+    // Writes the ids of the points in the area into found, as many as fit, and returns how many there were in all
+    public int query(Shape area, int[] found) {
+        int[] count = {0};
+        tree.query(area, id -> {
+            if (count[0] < found.length) {
+                found[count[0]] = (int) id;
+            }
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    public int count(Shape area) {
+        return tree.count(area);
+    }
+}
@@ -0,0 +1,139 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// A quadtree kept in flat arrays rather than as a graph of Nodes. Points are sorted by the Morton code of the
+// finest grid cell they fall in, so the points of any node are a contiguous range of the arrays, and the nodes
+// over them are laid out by MortonNodes over slots kept by MortonPoints.
+//
+// The first query after a change indexes the tree again, under a lock, so any number of threads can query it at
+// once as long as none of them is changing it.
+public class LinearQuadTree<T extends Point2D> implements SpatialIndex<T> {
+
+    private final MortonNodes.FloatNodes nodes;
+    private final MortonSlots.FloatCoordinates coordinates = new MortonSlots.FloatCoordinates();
+    private final MortonPoints<T> points;
+
+    private final ScratchSpace<MortonNodes.Walk> walks;
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
+
+    public LinearQuadTree(float x, float y, float width, float height) {
+        this(x, y, width, height, QuadTree.DEFAULT_MAX_BUCKET_SIZE, QuadTree.DEFAULT_MAX_DEPTH);
+    }
+
+    public LinearQuadTree(float x, float y, float width, float height, int maxBucketSize, int maxDepth) {
+        validatePositive(maxBucketSize, "Max bucket size");
+        validatePositive(maxDepth, "Max tree depth");
+        if (maxDepth > Morton.MAX_DEPTH) {
+            throw new IllegalArgumentException("Max tree depth must be at most " + Morton.MAX_DEPTH);
+        }
+        this.nodes = MortonNodes.of(new BoundingBox(x, y, x + width, y + height), maxBucketSize, maxDepth);
+        this.points = new MortonPoints<>(nodes, coordinates, Point2D::getX, Point2D::getY);
+        this.walks = new ScratchSpace<>(nodes::newWalk);
+    }
+
+    private void validatePositive(int number, String name) {
+        if (number < 1) {
+            throw new IllegalArgumentException(name + " must be a positive integer");
+        }
+    }
+
+    @Override
+    public void add(T point) {
+        points.add(point);
+    }
+
+    @Override
+    public boolean remove(T point) {
+        return points.remove(point);
+    }
+
+    @Override
+    public boolean contains(T point) {
+        return points.contains(point);
+    }
+
+    @Override
+    public void moved(T point) {
+        points.moved(point);
+    }
+
+    // Points that stay inside their leaf are updated straight away, which at most shuffles them within the leaf
+    @Override
+    public void moveTo(T point, float x, float y) {
+        points.moveTo(point, x, y);
+    }
+
+    @Override
+    public void update() {
+        points.update();
+    }
+
+    @Override
+    public void updateMoved() {
+        points.updateMoved();
+    }
+
+    @Override
+    public void queryByPointRadius(float x, float y, float radius, Consumer<? super T> consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    @Override
+    public void query(Shape area, Consumer<? super T> consumer) {
+        points.ensureIndexed();
+        float[] xs = coordinates.xs;
+        float[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (walk.inside || area.contains(xs[i], ys[i])) {
+                        consumer.accept(points.pointAt(i));
+                    }
+                }
+            }
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    @Override
+    public int count(Shape area) {
+        points.ensureIndexed();
+        float[] xs = coordinates.xs;
+        float[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            int count = 0;
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                if (walk.inside) {
+                    count += walk.end - walk.start;
+                    continue;
+                }
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (area.contains(xs[i], ys[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    @Override
+    public List<T> nearest(float x, float y, int k, float maxDistance) {
+        validatePositive(k, "Neighbour count");
+        return points.nearest(x, y, k, Candidate.maxDistanceSquared(maxDistance));
+    }
+}
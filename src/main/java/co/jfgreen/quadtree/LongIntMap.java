@@ -0,0 +1,96 @@
+package co.jfgreen.quadtree;
+
+import java.util.Arrays;
+
+// An open addressing map from long keys to non-negative int values, so that primitive trees can find a point's
+// slot from its id without boxing either
+final class LongIntMap {
+
+    static final int NO_VALUE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private int home(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        int i = home(key);
+        while (values[i] != NO_VALUE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        return values[find(key)];
+    }
+
+    // Returns the value the key had before, if any
+    int put(long key, int value) {
+        int i = find(key);
+        int previous = values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (previous == NO_VALUE && ++size > keys.length / 2) {
+            grow();
+        }
+        return previous;
+    }
+
+    // Returns the value the key had, if any. Later keys in the probe run are shifted back over the gap rather than
+    // leaving a tombstone.
+    int remove(long key) {
+        int gap = find(key);
+        int removed = values[gap];
+        if (removed == NO_VALUE) {
+            return NO_VALUE;
+        }
+        size--;
+        for (int i = (gap + 1) & mask; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            int home = home(keys[i]);
+            // Moves the key back if its home isn't in the cyclic range after the gap up to where it is now
+            boolean reachable = gap <= i ? (home > gap && home <= i) : (home > gap || home <= i);
+            if (!reachable) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = NO_VALUE;
+        return removed;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package co.jfgreen.quadtree;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// A quadtree of primitive points, each a long id and a position, for callers that identify their entities by id
+// rather than by object. Laid out like LinearQuadTree, in flat arrays sorted by Morton code and indexed again
+// when queried after points have changed cell, but with ids in place of points and a primitive map in place of
+// handles, so nothing on the path of an add, move or query is boxed. Like LinearQuadTree, it can be queried from
+// many threads at once while no thread is changing it.
+public class LongQuadTree {
+
+    public static final int MAX_DEPTH = Morton.MAX_DEPTH;
+
+    private final BoundingBox bounds;
+    private final MortonNodes.FloatNodes nodes;
+    private final MortonSlots.FloatCoordinates coordinates = new MortonSlots.FloatCoordinates();
+    private final IdSlots slots;
+
+    private final ScratchSpace<MortonNodes.Walk> walks;
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
+
+    public LongQuadTree(float x, float y, float width, float height) {
+        this(x, y, width, height, QuadTree.DEFAULT_MAX_BUCKET_SIZE, QuadTree.DEFAULT_MAX_DEPTH);
+    }
+
+    public LongQuadTree(float x, float y, float width, float height, int maxBucketSize, int maxDepth) {
+        validatePositive(maxBucketSize, "Max bucket size");
+        validatePositive(maxDepth, "Max tree depth");
+        if (maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Max tree depth must be at most " + MAX_DEPTH);
+        }
+        this.bounds = new BoundingBox(x, y, x + width, y + height);
+        this.nodes = MortonNodes.of(bounds, maxBucketSize, maxDepth);
+        this.slots = new IdSlots(nodes, coordinates);
+        this.walks = new ScratchSpace<>(nodes::newWalk);
+    }
+
+    private void validatePositive(int number, String name) {
+        if (number < 1) {
+            throw new IllegalArgumentException(name + " must be a positive integer");
+        }
+    }
+
+    public int size() {
+        return slots.slotsById.size();
+    }
+
+    public void add(long id, float x, float y) {
+        if (!bounds.contains(x, y)) {
+            throw new IllegalArgumentException("Point is outside tree bounds.");
+        }
+        if (contains(id)) {
+            throw new QuadTreeException("Point already exists in tree");
+        }
+        slots.add(id, x, y);
+    }
+
+    public boolean remove(long id) {
+        int slot = slots.slotsById.remove(id);
+        if (slot == LongIntMap.NO_VALUE) {
+            return false;
+        }
+        slots.removeSlot(slot);
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return slots.slotsById.get(id) != LongIntMap.NO_VALUE;
+    }
+
+    // The tree holds the only copy of a point's position, so moves take effect straight away. Points that stay in
+    // the same cell don't need indexing again.
+    public void moveTo(long id, float x, float y) {
+        if (!bounds.contains(x, y)) {
+            throw new IllegalArgumentException("Point is outside tree bounds.");
+        }
+        slots.place(slotOf(id), x, y);
+    }
+
+    public float getX(long id) {
+        return coordinates.xs[slotOf(id)];
+    }
+
+    public float getY(long id) {
+        return coordinates.ys[slotOf(id)];
+    }
+
+    private int slotOf(long id) {
+        int slot = slots.slotsById.get(id);
+        if (slot == LongIntMap.NO_VALUE) {
+            throw new QuadTreeException("Point does not exist in tree");
+        }
+        return slot;
+    }
+
+    public void queryByPointRadius(float x, float y, float radius, LongConsumer consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    public void query(Shape area, LongConsumer consumer) {
+        slots.ensureIndexed();
+        long[] ids = slots.ids;
+        float[] xs = coordinates.xs;
+        float[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (walk.inside || area.contains(xs[i], ys[i])) {
+                        consumer.accept(ids[i]);
+                    }
+                }
+            }
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    // Writes the ids of the points in the area into found, as many as fit, and returns how many there were in all
+    public int query(Shape area, long[] found) {
+        int[] count = {0};
+        query(area, id -> {
+            if (count[0] < found.length) {
+                found[count[0]] = id;
+            }
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    public int count(Shape area) {
+        slots.ensureIndexed();
+        float[] xs = coordinates.xs;
+        float[] ys = coordinates.ys;
+        MortonNodes.Walk walk = walks.borrow();
+        try {
+            int count = 0;
+            nodes.begin(walk);
+            while (nodes.next(walk, area)) {
+                if (walk.inside) {
+                    count += walk.end - walk.start;
+                    continue;
+                }
+                for (int i = walk.start; i < walk.end; i++) {
+                    if (area.contains(xs[i], ys[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            walks.giveBack(walk);
+        }
+    }
+
+    // Ids by slot, and a primitive map from id to slot kept up to date as slots move
+    private static final class IdSlots extends MortonSlots {
+
+        private long[] ids = new long[0];
+        private final LongIntMap slotsById = new LongIntMap();
+
+        private IdSlots(MortonNodes<?> nodes, Coordinates coordinates) {
+            super(nodes, coordinates);
+        }
+
+        private void add(long id, float x, float y) {
+            int slot = addSlot(x, y);
+            ids[slot] = id;
+            slotsById.put(id, slot);
+        }
+
+        @Override
+        void copyEntry(int from, int to) {
+            ids[to] = ids[from];
+            slotsById.put(ids[to], to);
+        }
+
+        @Override
+        void swapEntries(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            slotsById.put(ids[a], a);
+            slotsById.put(ids[b], b);
+        }
+
+        @Override
+        void reorderEntries(int[] order, int size) {
+            long[] sortedIds = new long[ids.length];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = ids[order[i]];
+                slotsById.put(sortedIds[i], i);
+            }
+            ids = sortedIds;
+        }
+
+        @Override
+        void resizeEntries(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// A loose quadtree of items with extent. Each node's loose bounds are its box grown on every side by a fraction
+// of its size, and an item lives in the deepest node whose box holds its centre and whose loose bounds hold all
+// of it, which depends only on the item's size and position, never on what else is in the tree. Any node can
+// hold items, and nodes are only created along the way to one. Queries test each item's own extent, so large
+// items are found without searching around every query by the largest extent.
+public class LooseQuadTree<T extends Extent2D> {
+
+    public static float DEFAULT_LOOSENESS = 2;
+
+    private final LooseNode<T> root;
+    private final int maxDepth;
+    // How far loose bounds reach past a node's box on each side, as a fraction of the box's width or height
+    private final float margin;
+    private final Map<T, LooseNode<T>> index = new IdentityHashMap<>();
+    private final Set<T> movedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ScratchSpace<Deque<LooseNode<T>>> stacks = new ScratchSpace<>(ArrayDeque::new);
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
+
+    public LooseQuadTree(float x, float y, float width, float height) {
+        this(x, y, width, height, QuadTree.DEFAULT_MAX_DEPTH, DEFAULT_LOOSENESS);
+    }
+
+    // Loose bounds are looseness times the size of a node's box, so it must be more than one
+    public LooseQuadTree(float x, float y, float width, float height, int maxDepth, float looseness) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max tree depth must be a positive integer");
+        }
+        if (!(looseness > 1)) {
+            throw new IllegalArgumentException("Looseness must be more than one");
+        }
+        this.maxDepth = maxDepth;
+        this.margin = (looseness - 1) / 2;
+        this.root = new LooseNode<>(new BoundingBox(x, y, x + width, y + height), null, 0, margin);
+    }
+
+    public void add(T item) {
+        if (!root.box.contains(item.getX(), item.getY())) {
+            throw new IllegalArgumentException("Item is outside tree bounds.");
+        }
+        if (contains(item)) {
+            throw new QuadTreeException("Item already exists in tree");
+        }
+        LooseNode<T> home = findHome(root, item.getX(), item.getY(), item.getHalfWidth(), item.getHalfHeight());
+        home.append(item);
+        index.put(item, home);
+    }
+
+    public boolean remove(T item) {
+        LooseNode<T> home = index.remove(item);
+        if (home == null) {
+            return false;
+        }
+        home.remove(item);
+        home.prune();
+        movedItems.remove(item);
+        return true;
+    }
+
+    public boolean contains(T item) {
+        return index.containsKey(item);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Marks an item, whose position or size has changed, to be re-homed by the next call to updateMoved()
+    public void moved(T item) {
+        if (!contains(item)) {
+            throw new QuadTreeException("Item does not exist in tree");
+        }
+        movedItems.add(item);
+    }
+
+    // Re-reads the position and size of every item, re-homing those that no longer belong in their node
+    public void update() {
+        new ArrayList<>(index.keySet()).forEach(this::updateItem);
+        movedItems.clear();
+    }
+
+    public void updateMoved() {
+        movedItems.forEach(this::updateItem);
+        movedItems.clear();
+    }
+
+    private void updateItem(T item) {
+        float x = item.getX();
+        float y = item.getY();
+        if (!root.box.contains(x, y)) {
+            throw new RuntimeException("No suitable home for item " + item);
+        }
+        float halfWidth = item.getHalfWidth();
+        float halfHeight = item.getHalfHeight();
+        LooseNode<T> home = index.get(item);
+        // The nearest node up that the item still belongs in, which the item's new home is in the subtree of
+        LooseNode<T> ancestor = home;
+        while (ancestor.parent != null && !(ancestor.box.contains(x, y) && ancestor.fits(x, y, halfWidth, halfHeight))) {
+            ancestor = ancestor.parent;
+        }
+        LooseNode<T> newHome = findHome(ancestor, x, y, halfWidth, halfHeight);
+        if (newHome == home) {
+            home.updateExtent(item);
+        } else {
+            home.remove(item);
+            newHome.append(item);
+            index.put(item, newHome);
+            home.prune();
+        }
+    }
+
+    // Descends from the node as far as the item still fits, creating nodes on the way
+    private LooseNode<T> findHome(LooseNode<T> node, float x, float y, float halfWidth, float halfHeight) {
+        while (node.depth < maxDepth) {
+            int quadrant = node.quadrantOf(x, y);
+            LooseNode<T> child = node.children[quadrant];
+            if (child == null) {
+                BoundingBox childBox = node.quadBox(quadrant);
+                if (!LooseNode.fits(childBox, margin, x, y, halfWidth, halfHeight)) {
+                    break;
+                }
+                child = new LooseNode<>(childBox, node, node.depth + 1, margin);
+                node.children[quadrant] = child;
+            } else if (!child.fits(x, y, halfWidth, halfHeight)) {
+                break;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    public void queryByPointRadius(float x, float y, float radius, Consumer<? super T> consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    public Collection<T> queryByPointRadius(float x, float y, float radius) {
+        Collection<T> foundItems = new ArrayList<>();
+        query(new Circle(x, y, radius), foundItems::add);
+        return foundItems;
+    }
+
+    public Collection<T> queryByBoundingBox(float x, float y, float width, float height) {
+        Collection<T> foundItems = new ArrayList<>();
+        query(new BoundingBox(x, y, x + width, y + height), foundItems::add);
+        return foundItems;
+    }
+
+    // Finds the items whose extent overlaps the area, as of the last update. Like QuadTree's, queries can be
+    // made from many threads at once or from inside another query's consumer.
+    public void query(Shape area, Consumer<? super T> consumer) {
+        Deque<LooseNode<T>> nodesToExplore = stacks.borrow();
+        try {
+            query(area, consumer, nodesToExplore);
+        } finally {
+            stacks.giveBack(nodesToExplore);
+        }
+    }
+
+    private void query(Shape area, Consumer<? super T> consumer, Deque<LooseNode<T>> nodesToExplore) {
+        nodesToExplore.clear();
+        nodesToExplore.push(root);
+        while (!nodesToExplore.isEmpty()) {
+            LooseNode<T> node = nodesToExplore.pop();
+            // The root's own items may reach past its loose bounds, so it is always searched item by item
+            boolean isRoot = node.parent == null;
+            if (node.itemCount == 0 || !isRoot && !area.intersects(node.looseStartX, node.looseStartY,
+                    node.looseEndX, node.looseEndY)) {
+                continue;
+            }
+            if (!isRoot && area.contains(node.looseStartX, node.looseStartY, node.looseEndX, node.looseEndY)) {
+                // Every item in the subtree lies within the loose bounds
+                node.forEachItemInSubtree(consumer);
+                continue;
+            }
+            for (int i = 0; i < node.size; i++) {
+                if (area.intersects(node.startXs[i], node.startYs[i], node.endXs[i], node.endYs[i])) {
+                    consumer.accept(node.itemAt(i));
+                }
+            }
+            for (LooseNode<T> child : node.children) {
+                if (child != null) {
+                    nodesToExplore.push(child);
+                }
+            }
+        }
+    }
+
+    private static class LooseNode<T extends Extent2D> {
+
+        private static final Object[] NO_ITEMS = {};
+        private static final float[] NO_EDGES = {};
+        private static final int MIN_CAPACITY = 4;
+
+        private final BoundingBox box;
+        private final LooseNode<T> parent;
+        private final int depth;
+        private final float looseStartX;
+        private final float looseStartY;
+        private final float looseEndX;
+        private final float looseEndY;
+        // In quadrant order, top left, top right, bottom left then bottom right, null until needed
+        @SuppressWarnings("unchecked")
+        private final LooseNode<T>[] children = (LooseNode<T>[]) new LooseNode<?>[4];
+        // Items are kept alongside a copy of their extent, taken when they were last placed or updated
+        private Object[] items = NO_ITEMS;
+        private float[] startXs = NO_EDGES;
+        private float[] startYs = NO_EDGES;
+        private float[] endXs = NO_EDGES;
+        private float[] endYs = NO_EDGES;
+        private int size;
+        // Items in this node and all of its descendants
+        private int itemCount;
+
+        private LooseNode(BoundingBox box, LooseNode<T> parent, int depth, float margin) {
+            this.box = box;
+            this.parent = parent;
+            this.depth = depth;
+            this.looseStartX = looseStart(box.startX, box.getWidth(), margin);
+            this.looseStartY = looseStart(box.startY, box.getHeight(), margin);
+            this.looseEndX = looseEnd(box.endX, box.getWidth(), margin);
+            this.looseEndY = looseEnd(box.endY, box.getHeight(), margin);
+        }
+
+        private static float looseStart(float start, float size, float margin) {
+            return start - size * margin;
+        }
+
+        private static float looseEnd(float end, float size, float margin) {
+            return end + size * margin;
+        }
+
+        // Checked against the same rounded edges the node would have, so a query can rely on them holding the item
+        private static boolean fits(BoundingBox box, float margin, float x, float y, float halfWidth,
+                                    float halfHeight) {
+            return x - halfWidth >= looseStart(box.startX, box.getWidth(), margin) &&
+                    y - halfHeight >= looseStart(box.startY, box.getHeight(), margin) &&
+                    x + halfWidth <= looseEnd(box.endX, box.getWidth(), margin) &&
+                    y + halfHeight <= looseEnd(box.endY, box.getHeight(), margin);
+        }
+
+        private boolean fits(float x, float y, float halfWidth, float halfHeight) {
+            // The root holds anything whose centre is in the tree
+            return parent == null ||
+                    (x - halfWidth >= looseStartX && y - halfHeight >= looseStartY &&
+                            x + halfWidth <= looseEndX && y + halfHeight <= looseEndY);
+        }
+
+        // Points on a midline belong to the top or left quadrant, as with Node
+        private int quadrantOf(float x, float y) {
+            return (x <= box.midX ? 0 : 1) + (y <= box.midY ? 0 : 2);
+        }
+
+        private BoundingBox quadBox(int quadrant) {
+            switch (quadrant) {
+                case 0:
+                    return box.getTopLeftQuad();
+                case 1:
+                    return box.getTopRightQuad();
+                case 2:
+                    return box.getBottomLeftQuad();
+                default:
+                    return box.getBottomRightQuad();
+            }
+        }
+
+        private void append(T item) {
+            if (size == items.length) {
+                int capacity = Math.max(MIN_CAPACITY, items.length * 2);
+                items = Arrays.copyOf(items, capacity);
+                startXs = Arrays.copyOf(startXs, capacity);
+                startYs = Arrays.copyOf(startYs, capacity);
+                endXs = Arrays.copyOf(endXs, capacity);
+                endYs = Arrays.copyOf(endYs, capacity);
+            }
+            items[size] = item;
+            setExtent(size, item);
+            size++;
+            for (LooseNode<T> node = this; node != null; node = node.parent) {
+                node.itemCount++;
+            }
+        }
+
+        private void setExtent(int slot, T item) {
+            float x = item.getX();
+            float y = item.getY();
+            float halfWidth = item.getHalfWidth();
+            float halfHeight = item.getHalfHeight();
+            startXs[slot] = x - halfWidth;
+            startYs[slot] = y - halfHeight;
+            endXs[slot] = x + halfWidth;
+            endYs[slot] = y + halfHeight;
+        }
+
+        private void updateExtent(T item) {
+            setExtent(slotOf(item), item);
+        }
+
+        private void remove(T item) {
+            int slot = slotOf(item);
+            size--;
+            items[slot] = items[size];
+            startXs[slot] = startXs[size];
+            startYs[slot] = startYs[size];
+            endXs[slot] = endXs[size];
+            endYs[slot] = endYs[size];
+            items[size] = null;
+            for (LooseNode<T> node = this; node != null; node = node.parent) {
+                node.itemCount--;
+            }
+        }
+
+        private int slotOf(T item) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    return i;
+                }
+            }
+            throw new RuntimeException("Item " + item + " is not in the node it was indexed to");
+        }
+
+        // Drops this node, and any ancestors left empty by it, so empty regions don't keep a path of nodes
+        private void prune() {
+            LooseNode<T> node = this;
+            while (node.parent != null && node.itemCount == 0) {
+                LooseNode<T>[] siblings = node.parent.children;
+                for (int i = 0; i < siblings.length; i++) {
+                    if (siblings[i] == node) {
+                        siblings[i] = null;
+                    }
+                }
+                node = node.parent;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T itemAt(int slot) {
+            return (T) items[slot];
+        }
+
+        private void forEachItemInSubtree(Consumer<? super T> consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(itemAt(i));
+            }
+            for (LooseNode<T> child : children) {
+                if (child != null) {
+                    child.forEachItemInSubtree(consumer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package co.jfgreen.quadtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.function.LongConsumer;
+
+// A static quadtree of primitive points, each an id and a position, laid out like LinearQuadTree's arrays but in
+// a single ByteBuffer. Built trees live off the heap, and the same bytes can be written to a file and mapped back
+// in, so a large tree is loaded without reading or rebuilding it.
+//
+// The layout, all little endian, is a header, then the ids, xs and ys of the points in Morton order, then the
+// nodes, with the four children of a node next to each other and the root first. Reads use absolute positions,
+// so any number of threads can query one tree.
+public class MappedQuadTree {
+
+    private static final int MAGIC = 0x4D515431;
+    private static final int FORMAT_VERSION = 1;
+    public static final int MAX_DEPTH = Morton.MAX_DEPTH;
+
+    // Header fields: magic, format version, max depth, point count, node count, then the bounds
+    private static final int HEADER_BYTES = 40;
+    // Node fields: first child, start slot, end slot, then the node's bounds
+    private static final int NODE_BYTES = 28;
+    private static final int NO_CHILDREN = MortonNodes.NO_CHILDREN;
+
+    private final ByteBuffer buffer;
+    private final BoundingBox bounds;
+    private final int maxDepth;
+    private final int size;
+    private final int nodeCount;
+    private final int xsOffset;
+    private final int ysOffset;
+    private final int nodesOffset;
+    // Reused between queries to keep them allocation free, each deep enough for a walk down to the max depth
+    private final int stackSize;
+    private final ScratchSpace<int[]> stacks;
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
+
+    private MappedQuadTree(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < HEADER_BYTES || this.buffer.getInt(0) != MAGIC) {
+            throw new QuadTreeException("Buffer does not hold a mapped quadtree");
+        }
+        if (this.buffer.getInt(4) != FORMAT_VERSION) {
+            throw new QuadTreeException("Unsupported mapped quadtree format version " + this.buffer.getInt(4));
+        }
+        this.maxDepth = this.buffer.getInt(8);
+        this.size = this.buffer.getInt(12);
+        this.nodeCount = this.buffer.getInt(16);
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) {
+            throw new QuadTreeException("Mapped quadtree has invalid max depth " + maxDepth);
+        }
+        if (size < 0 || nodeCount < 1) {
+            throw new QuadTreeException("Mapped quadtree has invalid point or node count");
+        }
+        try {
+            this.bounds = new BoundingBox(this.buffer.getFloat(20), this.buffer.getFloat(24),
+                    this.buffer.getFloat(28), this.buffer.getFloat(32));
+        } catch (IllegalArgumentException e) {
+            throw new QuadTreeException("Mapped quadtree has invalid bounds");
+        }
+        this.stackSize = 3 * maxDepth + 2;
+        this.stacks = new ScratchSpace<>(() -> new int[stackSize]);
+        this.xsOffset = HEADER_BYTES + Long.BYTES * size;
+        this.ysOffset = xsOffset + Float.BYTES * size;
+        this.nodesOffset = ysOffset + Float.BYTES * size;
+        if (this.buffer.capacity() < byteSize(size, nodeCount)) {
+            throw new QuadTreeException("Mapped quadtree is truncated");
+        }
+    }
+
+    private static long byteSize(int pointCount, int nodeCount) {
+        return HEADER_BYTES + (long) pointCount * (Long.BYTES + 2 * Float.BYTES) + (long) nodeCount * NODE_BYTES;
+    }
+
+    // Uses a buffer holding a tree, such as one mapped from a file written by writeTo()
+    public static MappedQuadTree wrap(ByteBuffer buffer) {
+        return new MappedQuadTree(buffer);
+    }
+
+    // Maps a tree written by writeTo() into memory, read only, starting at the channel's current position
+    public static MappedQuadTree map(FileChannel channel) throws IOException {
+        return wrap(channel.map(FileChannel.MapMode.READ_ONLY, channel.position(),
+                channel.size() - channel.position()));
+    }
+
+    // Writes just the tree, which may be shorter than the buffer or mapping it came from
+    public void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.clear().limit((int) byteSize(size, nodeCount));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    // Builds a tree of the first n points into a direct buffer, in the same way as LinearQuadTree indexes them
+    public static MappedQuadTree build(long[] ids, float[] xs, float[] ys, int n,
+                                       float x, float y, float width, float height,
+                                       int maxBucketSize, int maxDepth) {
+        if (maxBucketSize < 1) {
+            throw new IllegalArgumentException("Max bucket size must be a positive integer");
+        }
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Max tree depth must be between 1 and " + MAX_DEPTH);
+        }
+        if (n < 0 || n > ids.length || n > xs.length || n > ys.length) {
+            throw new IllegalArgumentException("Point count must be between zero and the length of the arrays");
+        }
+        return new Builder(ids, xs, ys, n, new BoundingBox(x, y, x + width, y + height), maxBucketSize, maxDepth)
+                .build();
+    }
+
+    public BoundingBox getBounds() {
+        return bounds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long idAt(int slot) {
+        return buffer.getLong(HEADER_BYTES + Long.BYTES * slot);
+    }
+
+    private float xAt(int slot) {
+        return buffer.getFloat(xsOffset + Float.BYTES * slot);
+    }
+
+    private float yAt(int slot) {
+        return buffer.getFloat(ysOffset + Float.BYTES * slot);
+    }
+
+    private int nodeField(int node, int field) {
+        return buffer.getInt(nodesOffset + NODE_BYTES * node + field);
+    }
+
+    private float nodeEdge(int node, int field) {
+        return buffer.getFloat(nodesOffset + NODE_BYTES * node + field);
+    }
+
+    // Node fields are read from the buffer, which may not have been written by build(), so are checked before
+    // they are used to find slots or children. Children must come after their parent, so a walk can't loop, and
+    // the stack is sized for the max depth, so a walk can't go deeper.
+    private void checkNode(int node, int first, int start, int end, int top) {
+        if (start < 0 || start > end || end > size) {
+            throw new QuadTreeException("Mapped quadtree node " + node + " has invalid slots");
+        }
+        if (first != NO_CHILDREN && (first <= node || first > nodeCount - 4)) {
+            throw new QuadTreeException("Mapped quadtree node " + node + " has invalid children");
+        }
+        if (first != NO_CHILDREN && top + 4 > stackSize) {
+            throw new QuadTreeException("Mapped quadtree nests deeper than its max depth");
+        }
+    }
+
+    public void queryByPointRadius(float x, float y, float radius, LongConsumer consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    // The same traversal as LinearQuadTree.query()
+    public void query(Shape area, LongConsumer consumer) {
+        int[] nodesToExplore = stacks.borrow();
+        try {
+            query(area, consumer, nodesToExplore);
+        } finally {
+            stacks.giveBack(nodesToExplore);
+        }
+    }
+
+    private void query(Shape area, LongConsumer consumer, int[] nodesToExplore) {
+        int top = 0;
+        nodesToExplore[top++] = 0;
+        while (top > 0) {
+            int node = nodesToExplore[--top];
+            int start = nodeField(node, 4);
+            int end = nodeField(node, 8);
+            float startX = nodeEdge(node, 12);
+            float startY = nodeEdge(node, 16);
+            float endX = nodeEdge(node, 20);
+            float endY = nodeEdge(node, 24);
+            if (start == end || !area.intersects(startX, startY, endX, endY)) {
+                continue;
+            }
+            int first = nodeField(node, 0);
+            checkNode(node, first, start, end, top);
+            if (area.contains(startX, startY, endX, endY)) {
+                for (int i = start; i < end; i++) {
+                    consumer.accept(idAt(i));
+                }
+            } else if (first == NO_CHILDREN) {
+                for (int i = start; i < end; i++) {
+                    if (area.contains(xAt(i), yAt(i))) {
+                        consumer.accept(idAt(i));
+                    }
+                }
+            } else {
+                for (int quadrant = 3; quadrant >= 0; quadrant--) {
+                    nodesToExplore[top++] = first + quadrant;
+                }
+            }
+        }
+    }
+
+    public int count(Shape area) {
+        int[] nodesToExplore = stacks.borrow();
+        try {
+            return count(area, nodesToExplore);
+        } finally {
+            stacks.giveBack(nodesToExplore);
+        }
+    }
+
+    private int count(Shape area, int[] nodesToExplore) {
+        int count = 0;
+        int top = 0;
+        nodesToExplore[top++] = 0;
+        while (top > 0) {
+            int node = nodesToExplore[--top];
+            int start = nodeField(node, 4);
+            int end = nodeField(node, 8);
+            float startX = nodeEdge(node, 12);
+            float startY = nodeEdge(node, 16);
+            float endX = nodeEdge(node, 20);
+            float endY = nodeEdge(node, 24);
+            if (start == end || !area.intersects(startX, startY, endX, endY)) {
+                continue;
+            }
+            int first = nodeField(node, 0);
+            checkNode(node, first, start, end, top);
+            if (area.contains(startX, startY, endX, endY)) {
+                count += end - start;
+            } else if (first == NO_CHILDREN) {
+                for (int i = start; i < end; i++) {
+                    if (area.contains(xAt(i), yAt(i))) {
+                        count++;
+                    }
+                }
+            } else {
+                for (int quadrant = 3; quadrant >= 0; quadrant--) {
+                    nodesToExplore[top++] = first + quadrant;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Works out the layout on the heap, just as LinearQuadTree does, then copies it into a direct buffer in one go
+    private static class Builder {
+
+        private final long[] ids;
+        private final float[] xs;
+        private final float[] ys;
+        private final int n;
+        private final BoundingBox bounds;
+        private final MortonNodes.FloatNodes nodes;
+
+        private Builder(long[] ids, float[] xs, float[] ys, int n, BoundingBox bounds, int maxBucketSize,
+                        int maxDepth) {
+            this.ids = ids;
+            this.xs = xs;
+            this.ys = ys;
+            this.n = n;
+            this.bounds = bounds;
+            this.nodes = MortonNodes.of(bounds, maxBucketSize, maxDepth);
+        }
+
+        private MappedQuadTree build() {
+            long[] codes = new long[n];
+            for (int i = 0; i < n; i++) {
+                if (!bounds.contains(xs[i], ys[i])) {
+                    throw new IllegalArgumentException("Point " + ids[i] + " is outside tree bounds.");
+                }
+                codes[i] = nodes.grid.codeOf(xs[i], ys[i]);
+            }
+            int[] order = Morton.sortOrder(codes, n, nodes.grid.depth);
+            long[] sortedCodes = new long[n];
+            for (int i = 0; i < n; i++) {
+                sortedCodes[i] = codes[order[i]];
+            }
+            nodes.build(sortedCodes, n);
+            int nodeCount = nodes.count();
+            long byteSize = byteSize(n, nodeCount);
+            if (byteSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Tree of " + n + " points is too large for one buffer");
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) byteSize).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(nodes.grid.depth).putInt(n).putInt(nodeCount)
+                    .putFloat(bounds.startX).putFloat(bounds.startY).putFloat(bounds.endX).putFloat(bounds.endY);
+            buffer.position(HEADER_BYTES);
+            for (int slot : order) {
+                buffer.putLong(ids[slot]);
+            }
+            for (int slot : order) {
+                buffer.putFloat(xs[slot]);
+            }
+            for (int slot : order) {
+                buffer.putFloat(ys[slot]);
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                buffer.putInt(nodes.firstChild(node)).putInt(nodes.start(node)).putInt(nodes.end(node))
+                        .putFloat(nodes.startX(node)).putFloat(nodes.startY(node))
+                        .putFloat(nodes.endX(node)).putFloat(nodes.endY(node));
+            }
+            return new MappedQuadTree(buffer);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package co.jfgreen.quadtree;
+
+import java.util.Arrays;
+
+// Z-order codes, interleaving the bits of a cell's column (even bits) and row (odd bits). Two bits per level,
+// so the quadrant a code falls in at any level of a tree is just a pair of bits. Also sorts the slots of the
+// Morton ordered trees into code order.
+final class Morton {
+
+    // Deepest tree whose cell columns and rows still fit in an int
+    static final int MAX_DEPTH = 30;
+    // Most points out of order that are still cheaper to insertion sort than to sort afresh
+    static final int INSERTION_SORT_LIMIT = 32;
+    // Deepest tree whose codes fit in a positive long with a slot packed below them
+    private static final int PACKED_SORT_DEPTH = 16;
+
+    // Swaps two slots of a tree's points, codes and all
+    interface SlotSwapper {
+        void swap(int a, int b);
+    }
+
+    private Morton() {
+    }
+
+    static long encode(int column, int row) {
+        return spread(column) | (spread(row) << 1);
+    }
+
+    static int column(long code) {
+        return compact(code);
+    }
+
+    static int row(long code) {
+        return compact(code >>> 1);
+    }
+
+    // Which of the four children of a node at the given level, in a tree of the given depth, holds the code
+    static int quadrant(long code, int level, int depth) {
+        return (int) (code >>> (2 * (depth - level - 1))) & 3;
+    }
+
+    // The slots of the first size codes in code order, for a tree to take all of its points from at once
+    static int[] sortOrder(long[] codes, int size, int depth) {
+        int[] order = new int[size];
+        if (depth <= PACKED_SORT_DEPTH) {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (codes[i] << 31) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            mergeSort(codes, order, new int[size], 0, size);
+        }
+        return order;
+    }
+
+    private static void mergeSort(long[] codes, int[] order, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_LIMIT) {
+            for (int i = from + 1; i < to; i++) {
+                int slot = order[i];
+                int j = i;
+                for (; j > from && codes[order[j - 1]] > codes[slot]; j--) {
+                    order[j] = order[j - 1];
+                }
+                order[j] = slot;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(codes, order, buffer, from, mid);
+        mergeSort(codes, order, buffer, mid, to);
+        if (codes[order[mid - 1]] <= codes[order[mid]]) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        int out = from;
+        while (left < mid && right < to) {
+            order[out++] = codes[buffer[right]] < codes[buffer[left]] ? buffer[right++] : buffer[left++];
+        }
+        while (left < mid) {
+            order[out++] = buffer[left++];
+        }
+        while (right < to) {
+            order[out++] = buffer[right++];
+        }
+    }
+
+    // Cheap when only a few points have changed cell, which is the common case between updates
+    static void insertionSort(long[] codes, int size, SlotSwapper swapper) {
+        for (int i = 1; i < size; i++) {
+            for (int j = i; j > 0 && codes[j - 1] > codes[j]; j--) {
+                swapper.swap(j - 1, j);
+            }
+        }
+    }
+
+    // Moves a slot whose code has changed back into order within the range of slots around it
+    static void restoreOrder(long[] codes, int slot, int start, int end, SlotSwapper swapper) {
+        while (slot > start && codes[slot - 1] > codes[slot]) {
+            swapper.swap(slot - 1, slot);
+            slot--;
+        }
+        while (slot < end - 1 && codes[slot] > codes[slot + 1]) {
+            swapper.swap(slot, slot + 1);
+            slot++;
+        }
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static int compact(long code) {
+        long v = code & 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+}
@@ -0,0 +1,82 @@
+package co.jfgreen.quadtree;
+
+// The finest grid of a Morton ordered tree, 2^depth cells a side, shared by LinearQuadTree, LongQuadTree,
+// DoubleQuadTree and MappedQuadTree. Grid lines are always worked out here, from the cell index, so that the
+// bounds of nodes and the cells points are put in agree exactly. Trees of float points round grid lines to
+// floats, and put points in cells by comparing against those rounded lines.
+final class MortonGrid {
+
+    final int depth;
+    final int cellsPerSide;
+    private final double startX;
+    private final double startY;
+    private final double endX;
+    private final double endY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final boolean floatLines;
+
+    private MortonGrid(double startX, double startY, double endX, double endY, int depth, boolean floatLines) {
+        this.depth = depth;
+        this.cellsPerSide = 1 << depth;
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+        this.cellWidth = (endX - startX) / cellsPerSide;
+        this.cellHeight = (endY - startY) / cellsPerSide;
+        this.floatLines = floatLines;
+    }
+
+    static MortonGrid of(BoundingBox bounds, int depth) {
+        return new MortonGrid(bounds.startX, bounds.startY, bounds.endX, bounds.endY, depth, true);
+    }
+
+    static MortonGrid of(double startX, double startY, double endX, double endY, int depth) {
+        return new MortonGrid(startX, startY, endX, endY, depth, false);
+    }
+
+    // Whether the point is inside the grid, edges included, as the bounds of the tree
+    boolean encloses(double x, double y) {
+        return x >= startX && y >= startY && x <= endX && y <= endY;
+    }
+
+    long codeOf(double x, double y) {
+        return Morton.encode(column(x), row(y));
+    }
+
+    int column(double x) {
+        int column = Math.max(0, Math.min(cellsPerSide - 1, (int) ((x - startX) / cellWidth)));
+        while (column > 0 && x < columnLine(column)) {
+            column--;
+        }
+        while (column < cellsPerSide - 1 && x > columnLine(column + 1)) {
+            column++;
+        }
+        return column;
+    }
+
+    int row(double y) {
+        int row = Math.max(0, Math.min(cellsPerSide - 1, (int) ((y - startY) / cellHeight)));
+        while (row > 0 && y < rowLine(row)) {
+            row--;
+        }
+        while (row < cellsPerSide - 1 && y > rowLine(row + 1)) {
+            row++;
+        }
+        return row;
+    }
+
+    // The vertical grid line at the start of the given column, the last line being the end of the grid
+    double columnLine(int column) {
+        return column == cellsPerSide ? endX : round(startX + column * cellWidth);
+    }
+
+    double rowLine(int row) {
+        return row == cellsPerSide ? endY : round(startY + row * cellHeight);
+    }
+
+    private double round(double line) {
+        return floatLines ? (float) line : line;
+    }
+}
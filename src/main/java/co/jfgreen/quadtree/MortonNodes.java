@@ -0,0 +1,301 @@
+package co.jfgreen.quadtree;
+
+import java.util.Arrays;
+
+// The nodes of a Morton ordered tree, shared by LinearQuadTree, LongQuadTree, DoubleQuadTree and the builder of
+// MappedQuadTree. The tree keeps its points sorted by code, so the points of any node are a contiguous range of
+// slots. Nodes are kept in arrays too, the root first and the four children of a node next to each other, with
+// their bounds in the precision of the tree's points.
+abstract class MortonNodes<A> {
+
+    static final int NO_CHILDREN = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    final MortonGrid grid;
+    private final int maxBucketSize;
+    private int[] firstChild = new int[0];
+    private int[] nodeStart = new int[0];
+    private int[] nodeEnd = new int[0];
+    private int nodeCount;
+
+    private MortonNodes(MortonGrid grid, int maxBucketSize) {
+        this.grid = grid;
+        this.maxBucketSize = maxBucketSize;
+    }
+
+    static FloatNodes of(BoundingBox bounds, int maxBucketSize, int maxDepth) {
+        return new FloatNodes(MortonGrid.of(bounds, maxDepth), maxBucketSize);
+    }
+
+    static DoubleNodes of(double startX, double startY, double endX, double endY, int maxBucketSize, int maxDepth) {
+        return new DoubleNodes(MortonGrid.of(startX, startY, endX, endY, maxDepth), maxBucketSize);
+    }
+
+    int count() {
+        return nodeCount;
+    }
+
+    int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    int start(int node) {
+        return nodeStart[node];
+    }
+
+    int end(int node) {
+        return nodeEnd[node];
+    }
+
+    // Lays nodes out over the first size codes, which must be sorted
+    void build(long[] codes, int size) {
+        nodeCount = 0;
+        allocate(1);
+        buildNode(codes, 0, 0, 0L, 0, size);
+    }
+
+    // A node's code is the Morton code of its cell on the grid for its level
+    private void buildNode(long[] codes, int node, int level, long code, int start, int end) {
+        int span = grid.cellsPerSide >> level;
+        setBounds(node, Morton.column(code) * span, Morton.row(code) * span, span);
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        if (end - start > maxBucketSize && level < grid.depth) {
+            int first = allocate(4);
+            firstChild[node] = first;
+            int shift = 2 * (grid.depth - level - 1);
+            int childStart = start;
+            for (int quadrant = 0; quadrant < 4; quadrant++) {
+                long childCode = (code << 2) | quadrant;
+                int childEnd = quadrant == 3 ? end : firstSlotFrom(codes, (childCode + 1) << shift, childStart, end);
+                buildNode(codes, first + quadrant, level + 1, childCode, childStart, childEnd);
+                childStart = childEnd;
+            }
+        } else {
+            firstChild[node] = NO_CHILDREN;
+        }
+    }
+
+    // The first slot in the range whose code is at least the given code
+    private static int firstSlotFrom(long[] codes, long code, int start, int end) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (codes[mid] < code) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int allocate(int count) {
+        int first = nodeCount;
+        nodeCount += count;
+        if (nodeCount > firstChild.length) {
+            int capacity = Math.max(MIN_CAPACITY, Math.max(nodeCount, firstChild.length * 2));
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nodeStart = Arrays.copyOf(nodeStart, capacity);
+            nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+            growBounds(capacity);
+        }
+        return first;
+    }
+
+    int leafHolding(long code) {
+        int node = 0;
+        int level = 0;
+        while (firstChild[node] != NO_CHILDREN) {
+            node = firstChild[node] + Morton.quadrant(code, level, grid.depth);
+            level++;
+        }
+        return node;
+    }
+
+    Walk newWalk() {
+        return new Walk(grid.depth);
+    }
+
+    void begin(Walk walk) {
+        walk.top = 0;
+        walk.nodesToExplore[walk.top++] = 0;
+    }
+
+    // Moves the walk on to the next run of slots in or cut by the area, returning false once there are none.
+    // A subtree's points are a contiguous run, so one inside the area is given whole, for the caller to pass on
+    // untested.
+    boolean next(Walk walk, A area) {
+        int[] nodesToExplore = walk.nodesToExplore;
+        while (walk.top > 0) {
+            int node = nodesToExplore[--walk.top];
+            if (nodeStart[node] == nodeEnd[node] || !intersects(area, node)) {
+                continue;
+            }
+            int first = firstChild[node];
+            boolean inside = contains(area, node);
+            if (inside || first == NO_CHILDREN) {
+                walk.start = nodeStart[node];
+                walk.end = nodeEnd[node];
+                walk.inside = inside;
+                return true;
+            }
+            for (int quadrant = 3; quadrant >= 0; quadrant--) {
+                nodesToExplore[walk.top++] = first + quadrant;
+            }
+        }
+        return false;
+    }
+
+    abstract void setBounds(int node, int column, int row, int span);
+
+    abstract void growBounds(int capacity);
+
+    abstract boolean intersects(A area, int node);
+
+    abstract boolean contains(A area, int node);
+
+    // The square of the distance from (x, y) to the nearest point of the node, in the precision of the tree
+    abstract double distanceSquared(int node, double x, double y);
+
+    // How far a depth first walk over the nodes an area touches has got. Walks are borrowed from a ScratchSpace,
+    // so queries don't allocate and can be nested.
+    static final class Walk {
+
+        private final int[] nodesToExplore;
+        private int top;
+        // The run of slots the walk is at, and whether all of it is inside the area or its points must be tested
+        int start;
+        int end;
+        boolean inside;
+
+        private Walk(int maxDepth) {
+            this.nodesToExplore = new int[3 * maxDepth + 2];
+        }
+    }
+
+    static final class FloatNodes extends MortonNodes<Shape> {
+
+        private float[] nodeStartX = new float[0];
+        private float[] nodeStartY = new float[0];
+        private float[] nodeEndX = new float[0];
+        private float[] nodeEndY = new float[0];
+
+        private FloatNodes(MortonGrid grid, int maxBucketSize) {
+            super(grid, maxBucketSize);
+        }
+
+        float startX(int node) {
+            return nodeStartX[node];
+        }
+
+        float startY(int node) {
+            return nodeStartY[node];
+        }
+
+        float endX(int node) {
+            return nodeEndX[node];
+        }
+
+        float endY(int node) {
+            return nodeEndY[node];
+        }
+
+        // The grid rounds its lines to floats, so these casts are exact
+        @Override
+        void setBounds(int node, int column, int row, int span) {
+            nodeStartX[node] = (float) grid.columnLine(column);
+            nodeStartY[node] = (float) grid.rowLine(row);
+            nodeEndX[node] = (float) grid.columnLine(column + span);
+            nodeEndY[node] = (float) grid.rowLine(row + span);
+        }
+
+        @Override
+        void growBounds(int capacity) {
+            nodeStartX = Arrays.copyOf(nodeStartX, capacity);
+            nodeStartY = Arrays.copyOf(nodeStartY, capacity);
+            nodeEndX = Arrays.copyOf(nodeEndX, capacity);
+            nodeEndY = Arrays.copyOf(nodeEndY, capacity);
+        }
+
+        @Override
+        boolean intersects(Shape area, int node) {
+            return area.intersects(nodeStartX[node], nodeStartY[node], nodeEndX[node], nodeEndY[node]);
+        }
+
+        @Override
+        boolean contains(Shape area, int node) {
+            return area.contains(nodeStartX[node], nodeStartY[node], nodeEndX[node], nodeEndY[node]);
+        }
+
+        // Searches are made from float points, so the casts are exact
+        @Override
+        double distanceSquared(int node, double x, double y) {
+            float dx = Math.max(Math.max(nodeStartX[node] - (float) x, 0), (float) x - nodeEndX[node]);
+            float dy = Math.max(Math.max(nodeStartY[node] - (float) y, 0), (float) y - nodeEndY[node]);
+            return dx*dx + dy*dy;
+        }
+    }
+
+    static final class DoubleNodes extends MortonNodes<DoubleShape> {
+
+        private double[] nodeStartX = new double[0];
+        private double[] nodeStartY = new double[0];
+        private double[] nodeEndX = new double[0];
+        private double[] nodeEndY = new double[0];
+
+        private DoubleNodes(MortonGrid grid, int maxBucketSize) {
+            super(grid, maxBucketSize);
+        }
+
+        double startX(int node) {
+            return nodeStartX[node];
+        }
+
+        double startY(int node) {
+            return nodeStartY[node];
+        }
+
+        double endX(int node) {
+            return nodeEndX[node];
+        }
+
+        double endY(int node) {
+            return nodeEndY[node];
+        }
+
+        @Override
+        void setBounds(int node, int column, int row, int span) {
+            nodeStartX[node] = grid.columnLine(column);
+            nodeStartY[node] = grid.rowLine(row);
+            nodeEndX[node] = grid.columnLine(column + span);
+            nodeEndY[node] = grid.rowLine(row + span);
+        }
+
+        @Override
+        void growBounds(int capacity) {
+            nodeStartX = Arrays.copyOf(nodeStartX, capacity);
+            nodeStartY = Arrays.copyOf(nodeStartY, capacity);
+            nodeEndX = Arrays.copyOf(nodeEndX, capacity);
+            nodeEndY = Arrays.copyOf(nodeEndY, capacity);
+        }
+
+        @Override
+        boolean intersects(DoubleShape area, int node) {
+            return area.intersects(nodeStartX[node], nodeStartY[node], nodeEndX[node], nodeEndY[node]);
+        }
+
+        @Override
+        boolean contains(DoubleShape area, int node) {
+            return area.contains(nodeStartX[node], nodeStartY[node], nodeEndX[node], nodeEndY[node]);
+        }
+
+        @Override
+        double distanceSquared(int node, double x, double y) {
+            double dx = Math.max(Math.max(nodeStartX[node] - x, 0), x - nodeEndX[node]);
+            double dy = Math.max(Math.max(nodeStartY[node] - y, 0), y - nodeEndY[node]);
+            return dx*dx + dy*dy;
+        }
+    }
+}
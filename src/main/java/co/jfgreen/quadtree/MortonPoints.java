@@ -0,0 +1,191 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+// The slots of LinearQuadTree and DoubleQuadTree, whose points are objects that know their own position. Points
+// are found by identity, like QuadTree's index, through a handle that stays the same as sorting moves them between
+// slots. Moved points are read again on update(), or on updateMoved() when the caller says which ones moved.
+final class MortonPoints<T> extends MortonSlots {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final ToDoubleFunction<? super T> xOf;
+    private final ToDoubleFunction<? super T> yOf;
+
+    private Object[] points = new Object[0];
+    private int[] handlesBySlot = new int[0];
+
+    private final Map<T, Integer> handles = new IdentityHashMap<>();
+    private int[] slotOfHandle = new int[0];
+    private int[] freeHandles = new int[0];
+    private int freeHandleCount;
+    private int handleCount;
+
+    private final Set<T> movedPoints = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    MortonPoints(MortonNodes<?> nodes, Coordinates coordinates,
+                 ToDoubleFunction<? super T> xOf, ToDoubleFunction<? super T> yOf) {
+        super(nodes, coordinates);
+        this.xOf = xOf;
+        this.yOf = yOf;
+    }
+
+    int size() {
+        return handles.size();
+    }
+
+    boolean contains(T point) {
+        return handles.containsKey(point);
+    }
+
+    void add(T point) {
+        double x = xOf.applyAsDouble(point);
+        double y = yOf.applyAsDouble(point);
+        if (!grid.encloses(x, y)) {
+            throw new IllegalArgumentException("Point is outside tree bounds.");
+        }
+        if (contains(point)) {
+            throw new QuadTreeException("Point already exists in tree");
+        }
+        int slot = addSlot(x, y);
+        int handle = newHandle();
+        handles.put(point, handle);
+        slotOfHandle[handle] = slot;
+        handlesBySlot[slot] = handle;
+        points[slot] = point;
+    }
+
+    boolean remove(T point) {
+        Integer handle = handles.remove(point);
+        if (handle == null) {
+            return false;
+        }
+        int slot = slotOfHandle[handle];
+        points[slot] = null;
+        removeSlot(slot);
+        freeHandle(handle);
+        movedPoints.remove(point);
+        return true;
+    }
+
+    void moved(T point) {
+        slotOf(point);
+        movedPoints.add(point);
+    }
+
+    void moveTo(T point, double x, double y) {
+        int slot = slotOf(point);
+        if (!grid.encloses(x, y) || !moveWithinLeaf(slot, x, y)) {
+            movedPoints.add(point);
+        }
+    }
+
+    void update() {
+        for (int i = 0; i < slotCount(); i++) {
+            if (!isRemoved(i)) {
+                updatePosition(i);
+            }
+        }
+        movedPoints.clear();
+        ensureIndexed();
+    }
+
+    void updateMoved() {
+        movedPoints.forEach(p -> updatePosition(slotOf(p)));
+        movedPoints.clear();
+        ensureIndexed();
+    }
+
+    private void updatePosition(int slot) {
+        T point = pointAt(slot);
+        double x = xOf.applyAsDouble(point);
+        double y = yOf.applyAsDouble(point);
+        if (!grid.encloses(x, y)) {
+            throw new RuntimeException("No suitable home for point " + point);
+        }
+        place(slot, x, y);
+    }
+
+    List<T> nearest(double x, double y, int k, double maxDistanceSquared) {
+        ensureIndexed();
+        int[] slots = nearestSlots(x, y, k, maxDistanceSquared);
+        List<T> nearestPoints = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            nearestPoints.add(pointAt(slot));
+        }
+        return nearestPoints;
+    }
+
+    @SuppressWarnings("unchecked")
+    T pointAt(int slot) {
+        return (T) points[slot];
+    }
+
+    private int slotOf(T point) {
+        Integer handle = handles.get(point);
+        if (handle == null) {
+            throw new QuadTreeException("Point does not exist in tree");
+        }
+        return slotOfHandle[handle];
+    }
+
+    @Override
+    void copyEntry(int from, int to) {
+        points[to] = points[from];
+        handlesBySlot[to] = handlesBySlot[from];
+        slotOfHandle[handlesBySlot[to]] = to;
+    }
+
+    @Override
+    void swapEntries(int a, int b) {
+        Object point = points[a];
+        points[a] = points[b];
+        points[b] = point;
+        int handle = handlesBySlot[a];
+        handlesBySlot[a] = handlesBySlot[b];
+        handlesBySlot[b] = handle;
+        slotOfHandle[handlesBySlot[a]] = a;
+        slotOfHandle[handlesBySlot[b]] = b;
+    }
+
+    @Override
+    void reorderEntries(int[] order, int size) {
+        Object[] sortedPoints = new Object[points.length];
+        int[] sortedHandles = new int[handlesBySlot.length];
+        for (int i = 0; i < size; i++) {
+            sortedPoints[i] = points[order[i]];
+            sortedHandles[i] = handlesBySlot[order[i]];
+            slotOfHandle[sortedHandles[i]] = i;
+        }
+        points = sortedPoints;
+        handlesBySlot = sortedHandles;
+    }
+
+    @Override
+    void resizeEntries(int capacity) {
+        points = Arrays.copyOf(points, capacity);
+        handlesBySlot = Arrays.copyOf(handlesBySlot, capacity);
+    }
+
+    @Override
+    void clearEntries(int from, int to) {
+        Arrays.fill(points, from, to, null);
+    }
+
+    private int newHandle() {
+        if (freeHandleCount > 0) {
+            return freeHandles[--freeHandleCount];
+        }
+        if (handleCount == slotOfHandle.length) {
+            int capacity = Math.max(MIN_CAPACITY, slotOfHandle.length * 2);
+            slotOfHandle = Arrays.copyOf(slotOfHandle, capacity);
+            freeHandles = Arrays.copyOf(freeHandles, capacity);
+        }
+        return handleCount++;
+    }
+
+    private void freeHandle(int handle) {
+        freeHandles[freeHandleCount++] = handle;
+    }
+}
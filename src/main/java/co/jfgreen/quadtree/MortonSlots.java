@@ -0,0 +1,343 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+
+// The slots of a Morton ordered tree, shared by LinearQuadTree, LongQuadTree and DoubleQuadTree. Each slot holds a
+// point's code, its position in a coordinate store of the tree's precision, and whatever the tree identifies the
+// point by, which subclasses keep and move about alongside. Changes leave the slots out of order until the next
+// ensureIndexed(), which compacts and sorts them and lays the nodes out over them again.
+abstract class MortonSlots {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long REMOVED = Long.MAX_VALUE;
+
+    final MortonGrid grid;
+    private final MortonNodes<?> nodes;
+    private final Coordinates coordinates;
+
+    // Codes, in order once indexed. Removed points are left in place with REMOVED as their code until then.
+    private long[] codes = new long[0];
+    private int size;
+
+    // Whether slots are sorted and compacted and the nodes describe them. Volatile so that readers which find it
+    // set see everything the indexing wrote.
+    private volatile boolean indexed;
+    private int pointsOutOfOrder;
+    private boolean pointsRemoved;
+
+    private final Morton.SlotSwapper swapper = this::swapSlots;
+
+    MortonSlots(MortonNodes<?> nodes, Coordinates coordinates) {
+        this.grid = nodes.grid;
+        this.nodes = nodes;
+        this.coordinates = coordinates;
+        nodes.build(codes, size);
+        indexed = true;
+    }
+
+    // The number of slots, counting removed points until the slots are next indexed
+    int slotCount() {
+        return size;
+    }
+
+    boolean isRemoved(int slot) {
+        return codes[slot] == REMOVED;
+    }
+
+    // Puts a point in a new slot and returns it, for the subclass to fill in what identifies the point
+    int addSlot(double x, double y) {
+        if (size == codes.length) {
+            growSlots();
+        }
+        int slot = size++;
+        coordinates.set(slot, x, y);
+        codes[slot] = grid.codeOf(x, y);
+        pointsOutOfOrder++;
+        indexed = false;
+        return slot;
+    }
+
+    void removeSlot(int slot) {
+        codes[slot] = REMOVED;
+        pointsRemoved = true;
+        indexed = false;
+    }
+
+    // Records a point's new position, leaving the slots to be sorted again only if it has changed cell
+    void place(int slot, double x, double y) {
+        coordinates.set(slot, x, y);
+        long code = grid.codeOf(x, y);
+        if (code != codes[slot]) {
+            codes[slot] = code;
+            pointsOutOfOrder++;
+            indexed = false;
+        }
+    }
+
+    // Moves a point straight away if it stays inside its leaf, which at most shuffles it within the leaf, and
+    // returns whether it did
+    boolean moveWithinLeaf(int slot, double x, double y) {
+        if (!indexed) {
+            return false;
+        }
+        long code = grid.codeOf(x, y);
+        int leaf = nodes.leafHolding(codes[slot]);
+        if (nodes.leafHolding(code) != leaf) {
+            return false;
+        }
+        coordinates.set(slot, x, y);
+        codes[slot] = code;
+        Morton.restoreOrder(codes, slot, nodes.start(leaf), nodes.end(leaf), swapper);
+        return true;
+    }
+
+    // Queries index the slots too, so indexing is done under a lock, letting any number of threads query a tree
+    // that no thread is changing
+    void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        synchronized (this) {
+            if (!indexed) {
+                index();
+            }
+        }
+    }
+
+    private void index() {
+        if (pointsRemoved) {
+            compactSlots();
+        }
+        if (pointsOutOfOrder > Morton.INSERTION_SORT_LIMIT) {
+            sortSlots();
+        } else if (pointsOutOfOrder > 0) {
+            Morton.insertionSort(codes, size, swapper);
+        }
+        nodes.build(codes, size);
+        pointsOutOfOrder = 0;
+        pointsRemoved = false;
+        indexed = true;
+    }
+
+    // The same best first search as QuadTree, over node numbers rather than Nodes. Returns the slots of up to k
+    // points within the max distance of (x, y), nearest first, in slots that are indexed.
+    int[] nearestSlots(double x, double y, int k, double maxDistanceSquared) {
+        PriorityQueue<Candidate<Integer>> nodesToExplore = new PriorityQueue<>();
+        PriorityQueue<Candidate<Integer>> nearest = new PriorityQueue<>(Collections.reverseOrder());
+        nodesToExplore.add(new Candidate<>(0, nodes.distanceSquared(0, x, y)));
+        while (!nodesToExplore.isEmpty()) {
+            Candidate<Integer> candidate = nodesToExplore.remove();
+            double searchDistanceSquared = nearest.size() < k ? maxDistanceSquared : nearest.peek().distanceSquared;
+            if (candidate.distanceSquared > searchDistanceSquared) {
+                break;
+            }
+            int node = candidate.item;
+            int first = nodes.firstChild(node);
+            if (first == MortonNodes.NO_CHILDREN) {
+                for (int i = nodes.start(node); i < nodes.end(node); i++) {
+                    double distanceSquared = coordinates.distanceSquared(i, x, y);
+                    if (distanceSquared <= maxDistanceSquared &&
+                            (nearest.size() < k || distanceSquared < nearest.peek().distanceSquared)) {
+                        nearest.add(new Candidate<>(i, distanceSquared));
+                        if (nearest.size() > k) {
+                            nearest.remove();
+                        }
+                    }
+                }
+            } else {
+                for (int child = first; child < first + 4; child++) {
+                    if (nodes.start(child) < nodes.end(child)) {
+                        nodesToExplore.add(new Candidate<>(child, nodes.distanceSquared(child, x, y)));
+                    }
+                }
+            }
+        }
+        List<Candidate<Integer>> found = new ArrayList<>(nearest);
+        Collections.sort(found);
+        int[] slots = new int[found.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = found.get(i).item;
+        }
+        return slots;
+    }
+
+    private void compactSlots() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (codes[i] != REMOVED) {
+                codes[live] = codes[i];
+                coordinates.copy(i, live);
+                copyEntry(i, live);
+                live++;
+            }
+        }
+        clearEntries(live, size);
+        size = live;
+    }
+
+    private void swapSlots(int a, int b) {
+        long code = codes[a];
+        codes[a] = codes[b];
+        codes[b] = code;
+        coordinates.swap(a, b);
+        swapEntries(a, b);
+    }
+
+    // Takes all of the slots into code order at once
+    private void sortSlots() {
+        int[] order = Morton.sortOrder(codes, size, grid.depth);
+        long[] sortedCodes = new long[codes.length];
+        for (int i = 0; i < size; i++) {
+            sortedCodes[i] = codes[order[i]];
+        }
+        codes = sortedCodes;
+        coordinates.reorder(order, size);
+        reorderEntries(order, size);
+    }
+
+    private void growSlots() {
+        int capacity = Math.max(MIN_CAPACITY, codes.length * 2);
+        codes = Arrays.copyOf(codes, capacity);
+        coordinates.resize(capacity);
+        resizeEntries(capacity);
+    }
+
+    // What identifies the point in each slot is moved about by these, in step with its code and position
+
+    abstract void copyEntry(int from, int to);
+
+    abstract void swapEntries(int a, int b);
+
+    // Takes the first size slots, in order, from the given slots
+    abstract void reorderEntries(int[] order, int size);
+
+    abstract void resizeEntries(int capacity);
+
+    // Lets go of the entries in slots that are no longer in use
+    void clearEntries(int from, int to) {
+    }
+
+    // Where the point in each slot is, in the precision of the tree
+    abstract static class Coordinates {
+
+        abstract void set(int slot, double x, double y);
+
+        abstract double distanceSquared(int slot, double x, double y);
+
+        abstract void copy(int from, int to);
+
+        abstract void swap(int a, int b);
+
+        abstract void reorder(int[] order, int size);
+
+        abstract void resize(int capacity);
+    }
+
+    // Positions are set from floats, so the casts here are exact, and distances are worked out in floats, just as
+    // QuadTree does
+    static final class FloatCoordinates extends Coordinates {
+
+        float[] xs = new float[0];
+        float[] ys = new float[0];
+
+        @Override
+        void set(int slot, double x, double y) {
+            xs[slot] = (float) x;
+            ys[slot] = (float) y;
+        }
+
+        @Override
+        double distanceSquared(int slot, double x, double y) {
+            float dx = xs[slot] - (float) x;
+            float dy = ys[slot] - (float) y;
+            return dx*dx + dy*dy;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+        }
+
+        @Override
+        void swap(int a, int b) {
+            float x = xs[a];
+            xs[a] = xs[b];
+            xs[b] = x;
+            float y = ys[a];
+            ys[a] = ys[b];
+            ys[b] = y;
+        }
+
+        @Override
+        void reorder(int[] order, int size) {
+            float[] sortedXs = new float[xs.length];
+            float[] sortedYs = new float[ys.length];
+            for (int i = 0; i < size; i++) {
+                sortedXs[i] = xs[order[i]];
+                sortedYs[i] = ys[order[i]];
+            }
+            xs = sortedXs;
+            ys = sortedYs;
+        }
+
+        @Override
+        void resize(int capacity) {
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+    }
+
+    static final class DoubleCoordinates extends Coordinates {
+
+        double[] xs = new double[0];
+        double[] ys = new double[0];
+
+        @Override
+        void set(int slot, double x, double y) {
+            xs[slot] = x;
+            ys[slot] = y;
+        }
+
+        @Override
+        double distanceSquared(int slot, double x, double y) {
+            double dx = xs[slot] - x;
+            double dy = ys[slot] - y;
+            return dx*dx + dy*dy;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+        }
+
+        @Override
+        void swap(int a, int b) {
+            double x = xs[a];
+            xs[a] = xs[b];
+            xs[b] = x;
+            double y = ys[a];
+            ys[a] = ys[b];
+            ys[b] = y;
+        }
+
+        @Override
+        void reorder(int[] order, int size) {
+            double[] sortedXs = new double[xs.length];
+            double[] sortedYs = new double[ys.length];
+            for (int i = 0; i < size; i++) {
+                sortedXs[i] = xs[order[i]];
+                sortedYs[i] = ys[order[i]];
+            }
+            xs = sortedXs;
+            ys = sortedYs;
+        }
+
+        @Override
+        void resize(int capacity) {
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+    }
+}
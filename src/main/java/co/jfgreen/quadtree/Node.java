@@ -1,46 +1,168 @@
 package co.jfgreen.quadtree;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Node<T extends Point2D> {
 
+    private static final int MIN_CAPACITY = 8;
+    private static final Object[] NO_POINTS = {};
+    private static final float[] NO_COORDINATES = {};
+    // Kinds of node in written trees
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+
     private final Node<T> parent;
     private final BoundingBox box;
-    private final int maxBucketSize;
-    private final HashSet<T> points;
+    // Passed down to new children, so adaptive tuning can give a region a policy of its own
+    private SplitPolicy splitPolicy;
+    private final Map<T, Node<T>> index;
+    private final NodePool pool;
+    // Points are kept alongside a copy of their coordinates, taken when they were last placed or updated,
+    // so that queries scan primitive arrays rather than calling back into each point.
+    private Object[] points = NO_POINTS;
+    private float[] xs = NO_COORDINATES;
+    private float[] ys = NO_COORDINATES;
+    private int size;
+    // Points in this node and all of its descendants, so a subtree inside a query can be counted without a visit
+    private int pointCount;
+    // Null once any point in the subtree has been added, removed or moved, until next needed. A new one is built
+    // each time and published whole, so concurrent aggregations never see one half built.
+    private volatile Summary summary;
+    // Kept until this subtree changes, so unchanged subtrees are shared between successive states
+    private ImmutableNode<T> state;
+    // Set on the roots of subtrees while QuadTree updates them in parallel
+    private boolean updatingInParallel;
     private Node<T> topLeft;
     private Node<T> topRight;
     private Node<T> bottomLeft;
     private Node<T> bottomRight;
+    // The children from when this node was last refined, kept once it is coarsened to be reused if it is refined
+    // again. They are emptied, but keep their buckets, and any spare children of their own.
+    private Node<T>[] spareChildren;
+    // Levels left to split, which can go below zero if the split policy allows extra depth
     private final int depth;
+    // Costs measured for adaptive tuning since it last looked at this leaf. Points tested by queries are counted
+    // without synchronisation, so are only estimates when queries run concurrently.
+    private int pointsTested;
+    private int pointsMovedOut;
 
     public Node(BoundingBox box, int maxBucketSize, int depth) {
-        this(box, null, maxBucketSize, depth);
+        this(box, new ThresholdSplitPolicy(maxBucketSize), depth, new IdentityHashMap<>(),
+                new NodePool(QuadTree.DEFAULT_MAX_POOLED_NODES));
+    }
+
+    Node(BoundingBox box, SplitPolicy splitPolicy, int depth, Map<T, Node<T>> index, NodePool pool) {
+        this(box, null, splitPolicy, depth, index, pool);
     }
 
-    private Node(BoundingBox box, Node<T> parent, int maxBucketSize, int depth) {
+    private Node(BoundingBox box, Node<T> parent, SplitPolicy splitPolicy, int depth, Map<T, Node<T>> index,
+                 NodePool pool) {
         this.box = box;
-        this.points = new HashSet<>();
         this.parent = parent;
-        this.maxBucketSize = maxBucketSize;
+        this.splitPolicy = splitPolicy;
         this.depth = depth;
+        this.index = index;
+        this.pool = pool;
     }
 
     public void addPoint(T point) {
-        if (!encloses(point)) {
+        addPoint(point, point.getX(), point.getY(), index);
+        for (Node<T> node = this; node != null; node = node.parent) {
+            node.pointCount++;
+        }
+    }
+
+    private void addPoint(T point, float x, float y, Map<T, Node<T>> index) {
+        if (!encloses(x, y)) {
            throw new RuntimeException("Point added to node that doesn't enclose it");
         }
         if (!isLeaf()) {
             throw new RuntimeException("Point added to node that isn't a leaf");
         }
-        //TODO: Once we add an index to quadtree, move this check there.
-        if (points.contains(point)) {
-            throw new QuadTreeException("Point already exists in tree");
+        append(point, x, y, index);
+    }
+
+    // Records the point's leaf in the given index, which is the tree's own but for parallel updates
+    private void append(T point, float x, float y, Map<T, Node<T>> index) {
+        if (size == points.length) {
+            grow();
+        }
+        points[size] = point;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        index.put(point, this);
+        invalidateCaches();
+    }
+
+    // Marks this node's summary and state, and its ancestors', as out of date. Stops at the first already marked,
+    // as its ancestors will have been too, or at the root of a subtree being updated in parallel, whose ancestors
+    // are shared with other subtrees and are left to endParallelUpdate().
+    private void invalidateCaches() {
+        for (Node<T> node = this; node != null && (node.summary != null || node.state != null); node = node.parent) {
+            node.summary = null;
+            node.state = null;
+            if (node.updatingInParallel) {
+                return;
+            }
+        }
+    }
+
+    void beginParallelUpdate() {
+        updatingInParallel = true;
+    }
+
+    // Passes on to this subtree's ancestors any invalidation that stopped here during the parallel update
+    void endParallelUpdate() {
+        updatingInParallel = false;
+        if (summary == null && state == null && parent != null) {
+            parent.invalidateCaches();
         }
-        this.points.add(point);
+    }
+
+    private Summary summarise() {
+        Summary current = summary;
+        if (current == null) {
+            current = new Summary();
+            if (isLeaf()) {
+                for (int i = 0; i < size; i++) {
+                    current.add(xs[i], ys[i]);
+                }
+            } else {
+                current.add(topLeft.summarise());
+                current.add(topRight.summarise());
+                current.add(bottomLeft.summarise());
+                current.add(bottomRight.summarise());
+            }
+            summary = current;
+        }
+        return current;
+    }
+
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, points.length * 2);
+        points = Arrays.copyOf(points, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T pointAt(int slot) {
+        return (T) points[slot];
+    }
+
+    private int slotOf(T point) {
+        for (int i = 0; i < size; i++) {
+            if (points[i] == point) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private Stream<Node<T>> children() {
@@ -49,150 +171,804 @@ public class Node<T extends Point2D> {
 
 
     public void removePoint(T p) {
-        points.remove(p);
+        int slot = slotOf(p);
+        if (slot >= 0) {
+            removeSlot(slot);
+            index.remove(p);
+            for (Node<T> node = this; node != null; node = node.parent) {
+                node.pointCount--;
+            }
+        }
+    }
+
+    // Moves a point into another leaf. Point counts only change below the nearest common ancestor, so leaves in
+    // separate subtrees can transfer points concurrently, as long as each records the new leaves in an index of
+    // its own.
+    void transferPoint(T p, Node<T> destination) {
+        transferPoint(p, destination, index);
+    }
+
+    void transferPoint(T p, Node<T> destination, Map<T, Node<T>> index) {
+        int slot = slotOf(p);
+        if (slot >= 0) {
+            removeSlot(slot);
+            pointsMovedOut++;
+            destination.addPoint(p, p.getX(), p.getY(), index);
+            Node<T> source = this;
+            while (source != destination) {
+                // Depth counts down, so the lower of the two is the deeper
+                if (source.depth <= destination.depth) {
+                    source.pointCount--;
+                    source = source.parent;
+                } else {
+                    destination.pointCount++;
+                    destination = destination.parent;
+                }
+            }
+        }
+    }
+
+    private void removeSlot(int slot) {
+        size--;
+        points[slot] = points[size];
+        xs[slot] = xs[size];
+        ys[slot] = ys[size];
+        points[size] = null;
+        invalidateCaches();
+    }
+
+    private void clearPoints() {
+        points = NO_POINTS;
+        xs = NO_COORDINATES;
+        ys = NO_COORDINATES;
+        size = 0;
+    }
+
+    // Updates the cached position of a point, as long as its new position is still inside this node
+    public boolean updatePosition(T point, float x, float y) {
+        return updatePosition(slotOf(point), x, y);
     }
 
     public boolean encloses(T point) {
-        return box.contains(point.getX(), point.getY());
+        return encloses(point.getX(), point.getY());
+    }
+
+    public boolean encloses(float x, float y) {
+        return box.contains(x, y);
     }
 
     private boolean isLeaf() {
         return topLeft == null && topRight == null && bottomLeft == null && bottomRight == null;
     }
 
-    public Collection<T> getPointsOutsideBounds() {
-        return points.stream().filter(p -> !encloses(p)).collect(Collectors.toList());
+    boolean isEmptyLeaf() {
+        return isLeaf() && size == 0;
     }
 
-    public ImmutableNode<T> getState() {
+    // Re-reads the position of every point, collecting those that are no longer inside this node
+    public void updatePositions(Collection<? super T> pointsOutsideBounds) {
+        for (int i = 0; i < size; i++) {
+            T p = pointAt(i);
+            if (!updatePosition(i, p.getX(), p.getY())) {
+                pointsOutsideBounds.add(p);
+            }
+        }
+    }
+
+    private boolean updatePosition(int slot, float x, float y) {
+        if (!encloses(x, y)) {
+            return false;
+        }
+        if (xs[slot] != x || ys[slot] != y) {
+            xs[slot] = x;
+            ys[slot] = y;
+            invalidateCaches();
+        }
+        return true;
+    }
+
+    // Collects the nodes the given number of levels down, or leaves above that
+    void collectSubtrees(int levels, Collection<Node<T>> subtrees) {
+        if (levels == 0 || isLeaf()) {
+            subtrees.add(this);
+        } else {
+            children().forEach(c -> c.collectSubtrees(levels - 1, subtrees));
+        }
+    }
+
+    public void forEachLeaf(Consumer<Node<T>> visitor) {
         if (isLeaf()) {
-            return new ImmutableNode<T>(box, new HashSet<>(points), null, null, null, null);
+            visitor.accept(this);
         } else {
-            return new ImmutableNode<T>(box, new HashSet<>(points),
-                    topLeft.getState(),
-                    topRight.getState(),
-                    bottomLeft.getState(),
-                    bottomRight.getState());
+            children().forEach(c -> c.forEachLeaf(visitor));
+        }
+    }
+
+    public ImmutableNode<T> getState() {
+        return getState(0);
+    }
+
+    // Subtrees that have changed since their state was last taken are given the new version
+    ImmutableNode<T> getState(long version) {
+        if (state == null) {
+            if (isLeaf()) {
+                state = new ImmutableNode<>(box, version, Arrays.copyOf(points, size), Arrays.copyOf(xs, size),
+                        Arrays.copyOf(ys, size), null, null, null, null);
+            } else {
+                state = new ImmutableNode<>(box, version, NO_POINTS, NO_COORDINATES, NO_COORDINATES,
+                        topLeft.getState(version),
+                        topRight.getState(version),
+                        bottomLeft.getState(version),
+                        bottomRight.getState(version));
+            }
         }
+        return state;
+    }
+
+    boolean hasCurrentState() {
+        return state != null;
+    }
+
+    BoundingBox getBounds() {
+        return box;
+    }
+
+    int getDepth() {
+        return depth;
     }
 
     public Optional<Node<T>> getParent() {
         return Optional.ofNullable(parent);
     }
 
-    //TODO: Kinda smelly, remove and use a hashmap instead
-    public Collection<Node<T>> leaves() {
-        Collection<Node<T>> leaves = new LinkedList<>();
-        traverse((node) -> {
-            if (node.isLeaf()) {
-                leaves.add(node);
-                return Collections.EMPTY_LIST;
+    public Collection<T> queryByShape(Shape area) {
+        Collection<T> foundPoints = new ArrayList<>();
+        queryByShape(area, foundPoints::add, new ArrayDeque<>());
+        return foundPoints;
+    }
+
+    // Depth first, using the given stack so that repeated queries don't need to allocate one each time.
+    // Subtrees entirely inside the area have all their points passed on without testing any of them.
+    public void queryByShape(Shape area, Consumer<? super T> consumer, Deque<Node<T>> nodesToExplore) {
+        nodesToExplore.clear();
+        nodesToExplore.push(this);
+        while (!nodesToExplore.isEmpty()) {
+            Node<T> node = nodesToExplore.pop();
+            if (node.pointCount == 0) {
+                continue;
+            }
+            if (area.contains(node.box)) {
+                node.forEachPoint(consumer);
+            } else if (node.isLeaf()) {
+                node.pointsTested += node.size;
+                for (int i = 0; i < node.size; i++) {
+                    if (area.contains(node.xs[i], node.ys[i])) {
+                        consumer.accept(node.pointAt(i));
+                    }
+                }
             } else {
-                return node.children().collect(Collectors.toList());
+                node.pushChildrenIntersecting(area, nodesToExplore);
             }
-        });
-        return leaves;
+        }
     }
 
-    // TODO: If we remove leaves() then we dont have to have the slightly obscure traverse() here
-    // TODO: Instead we could have a getLeavesIntersecting() (which traverses down) and then filter all candidate leaves
-    public Collection<T> queryByShape(Shape area) {
-        Collection<T> foundPoints = new LinkedList<>();
-        traverse((node) -> {
-            if (node.isLeaf()) {
-                if (area.contains(box)) {
-                    foundPoints.addAll(node.points);
+    // The number of points queryByShape() would find, using the counts of subtrees inside the area
+    int countInShape(Shape area, Deque<Node<T>> nodesToExplore) {
+        int count = 0;
+        nodesToExplore.clear();
+        nodesToExplore.push(this);
+        while (!nodesToExplore.isEmpty()) {
+            Node<T> node = nodesToExplore.pop();
+            if (node.pointCount == 0) {
+                continue;
+            }
+            if (area.contains(node.box)) {
+                count += node.pointCount;
+            } else if (node.isLeaf()) {
+                for (int i = 0; i < node.size; i++) {
+                    if (area.contains(node.xs[i], node.ys[i])) {
+                        count++;
+                    }
+                }
+            } else {
+                node.pushChildrenIntersecting(area, nodesToExplore);
+            }
+        }
+        return count;
+    }
+
+    // Like countInShape(), but folding the points into the aggregator, with subtrees inside the area passed to it
+    // as a whole if it accepts summaries
+    void aggregate(Shape area, Aggregator<? super T> aggregator, Deque<Node<T>> nodesToExplore) {
+        boolean acceptsSummaries = aggregator.acceptsSummaries();
+        nodesToExplore.clear();
+        nodesToExplore.push(this);
+        while (!nodesToExplore.isEmpty()) {
+            Node<T> node = nodesToExplore.pop();
+            if (node.pointCount == 0) {
+                continue;
+            }
+            if (area.contains(node.box)) {
+                if (acceptsSummaries) {
+                    aggregator.accept(node.summarise());
                 } else {
-                    for (T p : node.points) {
-                        if (area.contains(p.getX(), p.getY())) {
-                            foundPoints.add(p);
-                        }
+                    node.forEachPoint(aggregator);
+                }
+            } else if (node.isLeaf()) {
+                for (int i = 0; i < node.size; i++) {
+                    if (area.contains(node.xs[i], node.ys[i])) {
+                        aggregator.accept(node.pointAt(i), node.xs[i], node.ys[i]);
                     }
                 }
-                return Collections.EMPTY_LIST;
             } else {
-                return node.childrenIntersecting(area);
+                node.pushChildrenIntersecting(area, nodesToExplore);
             }
-        });
-        return foundPoints;
+        }
+    }
+
+    private void forEachPoint(Aggregator<? super T> aggregator) {
+        if (isLeaf()) {
+            for (int i = 0; i < size; i++) {
+                aggregator.accept(pointAt(i), xs[i], ys[i]);
+            }
+        } else {
+            topLeft.forEachPoint(aggregator);
+            topRight.forEachPoint(aggregator);
+            bottomLeft.forEachPoint(aggregator);
+            bottomRight.forEachPoint(aggregator);
+        }
+    }
+
+    private void forEachPoint(Consumer<? super T> consumer) {
+        if (isLeaf()) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(pointAt(i));
+            }
+        } else {
+            topLeft.forEachPoint(consumer);
+            topRight.forEachPoint(consumer);
+            bottomLeft.forEachPoint(consumer);
+            bottomRight.forEachPoint(consumer);
+        }
+    }
+
+    Spliterator<T> spliterator(Shape area) {
+        return new ShapeSpliterator<>(area, this);
+    }
+
+    // Walks the nodes intersecting an area as it is advanced, so a stream over it that stops early, as findFirst()
+    // and anyMatch() do, only visits the nodes it needs. Splits off half of the nodes it has yet to visit, opening
+    // up the next node to do so if that is all that's left, so parallel streams divide the work by quadrant.
+    private static final class ShapeSpliterator<T extends Point2D> implements Spliterator<T> {
+
+        private final Shape area;
+        private final Deque<Node<T>> nodesToExplore = new ArrayDeque<>();
+        private Node<T> leaf;
+        private boolean leafInsideArea;
+        private int slot;
+
+        private ShapeSpliterator(Shape area, Node<T> root) {
+            this.area = area;
+            if (area.intersects(root.box)) {
+                nodesToExplore.push(root);
+            }
+        }
+
+        private ShapeSpliterator(Shape area, Deque<Node<T>> nodesToExplore) {
+            this.area = area;
+            this.nodesToExplore.addAll(nodesToExplore);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (true) {
+                if (leaf != null) {
+                    while (slot < leaf.size) {
+                        int i = slot++;
+                        if (leafInsideArea || area.contains(leaf.xs[i], leaf.ys[i])) {
+                            action.accept(leaf.pointAt(i));
+                            return true;
+                        }
+                    }
+                    leaf = null;
+                }
+                if (!nextLeaf()) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean nextLeaf() {
+            while (!nodesToExplore.isEmpty()) {
+                Node<T> node = nodesToExplore.pop();
+                if (node.pointCount == 0) {
+                    continue;
+                }
+                if (node.isLeaf()) {
+                    leaf = node;
+                    leafInsideArea = area.contains(node.box);
+                    slot = 0;
+                    return true;
+                }
+                node.pushChildrenIntersecting(area, nodesToExplore);
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (nodesToExplore.size() == 1 && !nodesToExplore.peek().isLeaf()) {
+                nodesToExplore.pop().pushChildrenIntersecting(area, nodesToExplore);
+            }
+            int splitSize = nodesToExplore.size() / 2;
+            if (splitSize == 0) {
+                return null;
+            }
+            // The bottom of the stack would be visited last, so is the part handed over
+            Deque<Node<T>> split = new ArrayDeque<>(splitSize);
+            for (int i = 0; i < splitSize; i++) {
+                split.push(nodesToExplore.removeLast());
+            }
+            return new ShapeSpliterator<>(area, split);
+        }
+
+        // An upper bound, as points in nodes only partly inside the area may not be found
+        @Override
+        public long estimateSize() {
+            long size = leaf == null ? 0 : leaf.size - slot;
+            for (Node<T> node : nodesToExplore) {
+                size += node.pointCount;
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL;
+        }
+    }
+
+    // Adaptive tuning
+
+    SplitPolicy getSplitPolicy() {
+        return splitPolicy;
+    }
+
+    void setSplitPolicy(SplitPolicy splitPolicy) {
+        this.splitPolicy = splitPolicy;
+    }
+
+    // Whether this leaf has enough points to split, but is as deep as its policy allows
+    boolean isAtDepthLimit() {
+        return splitPolicy.shouldSplit(size) && depth <= -splitPolicy.getExtraDepth();
+    }
+
+    // False once a merge has taken this node, or one of its ancestors, out of the tree. Nodes that couldn't be
+    // pooled keep their points and parent when merged away, so mustn't be worked on after.
+    boolean isAttached() {
+        for (Node<T> node = this; node.parent != null; node = node.parent) {
+            Node<T> parent = node.parent;
+            if (parent.topLeft != node && parent.topRight != node && parent.bottomLeft != node &&
+                    parent.bottomRight != node) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether quartering the box would give quads with some area, which float precision stops being true of
+    // boxes split far enough beyond the max depth
+    boolean isDivisible() {
+        return box.startX < box.midX && box.midX < box.endX && box.startY < box.midY && box.midY < box.endY;
+    }
+
+    int takePointsTested() {
+        int tested = pointsTested;
+        pointsTested = 0;
+        return tested;
+    }
+
+    int takePointsMovedOut() {
+        int movedOut = pointsMovedOut;
+        pointsMovedOut = 0;
+        return movedOut;
+    }
+
+    int getPointCount() {
+        return pointCount;
+    }
+
+    private void pushChildrenIntersecting(Shape area, Deque<Node<T>> nodesToExplore) {
+        if (area.intersects(bottomRight.box)) nodesToExplore.push(bottomRight);
+        if (area.intersects(bottomLeft.box)) nodesToExplore.push(bottomLeft);
+        if (area.intersects(topRight.box)) nodesToExplore.push(topRight);
+        if (area.intersects(topLeft.box)) nodesToExplore.push(topLeft);
+    }
+
+    // Answers a batch of queries in one descent. Each node is handed the areas that intersected its parent and
+    // passes on to its children those that intersect it, so a node is visited once however many areas cover it.
+    // The areas surviving at each level are kept in a row of activeByLevel, added as deeper levels are reached.
+    private <S extends Shape> void queryAll(List<S> areas, int[] active, int activeCount, int level,
+                                            List<int[]> activeByLevel, BiConsumer<? super S, ? super T> consumer) {
+        if (level == activeByLevel.size()) {
+            activeByLevel.add(new int[areas.size()]);
+        }
+        int[] intersecting = activeByLevel.get(level);
+        int count = 0;
+        for (int i = 0; i < activeCount; i++) {
+            if (areas.get(active[i]).intersects(box)) {
+                intersecting[count++] = active[i];
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        if (isLeaf()) {
+            pointsTested += count * size;
+            for (int i = 0; i < count; i++) {
+                S area = areas.get(intersecting[i]);
+                for (int j = 0; j < size; j++) {
+                    if (area.contains(xs[j], ys[j])) {
+                        consumer.accept(area, pointAt(j));
+                    }
+                }
+            }
+        } else {
+            topLeft.queryAll(areas, intersecting, count, level + 1, activeByLevel, consumer);
+            topRight.queryAll(areas, intersecting, count, level + 1, activeByLevel, consumer);
+            bottomLeft.queryAll(areas, intersecting, count, level + 1, activeByLevel, consumer);
+            bottomRight.queryAll(areas, intersecting, count, level + 1, activeByLevel, consumer);
+        }
+    }
+
+    <S extends Shape> void queryAll(List<S> areas, BiConsumer<? super S, ? super T> consumer) {
+        int[] all = new int[areas.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        queryAll(areas, all, all.length, 0, new ArrayList<>(), consumer);
+    }
+
+    // Every pair of points in this subtree no further than sqrt(distanceSquared) apart, each pair reported once.
+    // Pairs within a child are left to the child, and pairs across children come from each pair of children.
+    void forEachPairWithin(float distanceSquared, BiConsumer<? super T, ? super T> consumer) {
+        if (isLeaf()) {
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    if (isWithin(xs[i], ys[i], xs[j], ys[j], distanceSquared)) {
+                        consumer.accept(pointAt(i), pointAt(j));
+                    }
+                }
+            }
+        } else {
+            topLeft.forEachPairWithin(distanceSquared, consumer);
+            topRight.forEachPairWithin(distanceSquared, consumer);
+            bottomLeft.forEachPairWithin(distanceSquared, consumer);
+            bottomRight.forEachPairWithin(distanceSquared, consumer);
+            topLeft.forEachPairWithin(topRight, distanceSquared, consumer);
+            topLeft.forEachPairWithin(bottomLeft, distanceSquared, consumer);
+            topLeft.forEachPairWithin(bottomRight, distanceSquared, consumer);
+            topRight.forEachPairWithin(bottomLeft, distanceSquared, consumer);
+            topRight.forEachPairWithin(bottomRight, distanceSquared, consumer);
+            bottomLeft.forEachPairWithin(bottomRight, distanceSquared, consumer);
+        }
+    }
+
+    // Pairs with one point in this subtree and the other in a separate one, skipping subtrees too far apart
+    private void forEachPairWithin(Node<T> other, float distanceSquared, BiConsumer<? super T, ? super T> consumer) {
+        if (box.distanceSquaredTo(other.box) > distanceSquared) {
+            return;
+        }
+        if (isLeaf() && other.isLeaf()) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < other.size; j++) {
+                    if (isWithin(xs[i], ys[i], other.xs[j], other.ys[j], distanceSquared)) {
+                        consumer.accept(pointAt(i), other.pointAt(j));
+                    }
+                }
+            }
+        } else if (isLeaf() || (!other.isLeaf() && other.depth > depth)) {
+            // Split the larger of the two, or the one that can be split
+            other.children().forEach(c -> forEachPairWithin(c, distanceSquared, consumer));
+        } else {
+            children().forEach(c -> c.forEachPairWithin(other, distanceSquared, consumer));
+        }
+    }
+
+    private static boolean isWithin(float x1, float y1, float x2, float y2, float distanceSquared) {
+        float dx = x1 - x2;
+        float dy = y1 - y2;
+        return dx*dx + dy*dy <= distanceSquared;
     }
 
-    private Collection<Node<T>> childrenIntersecting(Shape area) {
-        return children().filter(c -> area.intersects(c.box)).collect(Collectors.toList());
+    // Best first search, nodes are explored in order of their distance from (x, y) and the search
+    // stops once the next node is further away than the worst of the k nearest points found so far.
+    public List<T> findNearest(float x, float y, int k, float maxDistance) {
+        return findNearestCandidates(x, y, k, maxDistance).stream().map(c -> c.item).collect(Collectors.toList());
     }
 
-    private void traverse(Function<Node<T>, Collection<Node<T>>> visitor) {
-        Queue<Node<T>> nodesToExplore = new LinkedList<>();
-        nodesToExplore.add(this);
+    List<Candidate<T>> findNearestCandidates(float x, float y, int k, float maxDistance) {
+        float maxDistanceSquared = Candidate.maxDistanceSquared(maxDistance);
+        PriorityQueue<Candidate<Node<T>>> nodesToExplore = new PriorityQueue<>();
+        PriorityQueue<Candidate<T>> nearest = new PriorityQueue<>(Collections.reverseOrder());
+        nodesToExplore.add(new Candidate<>(this, box.distanceSquaredTo(x, y)));
         while (!nodesToExplore.isEmpty()) {
-            Node<T> currentNode = nodesToExplore.remove();
-            nodesToExplore.addAll(visitor.apply(currentNode));
+            Candidate<Node<T>> candidate = nodesToExplore.remove();
+            double searchDistanceSquared = nearest.size() < k ? maxDistanceSquared : nearest.peek().distanceSquared;
+            if (candidate.distanceSquared > searchDistanceSquared) {
+                break;
+            }
+            Node<T> node = candidate.item;
+            if (node.isLeaf()) {
+                for (int i = 0; i < node.size; i++) {
+                    float dx = node.xs[i] - x;
+                    float dy = node.ys[i] - y;
+                    float distanceSquared = dx*dx + dy*dy;
+                    if (distanceSquared <= maxDistanceSquared &&
+                            (nearest.size() < k || distanceSquared < nearest.peek().distanceSquared)) {
+                        nearest.add(new Candidate<>(node.pointAt(i), distanceSquared));
+                        if (nearest.size() > k) {
+                            nearest.remove();
+                        }
+                    }
+                }
+            } else {
+                node.children().forEach(c -> nodesToExplore.add(new Candidate<>(c, c.box.distanceSquaredTo(x, y))));
+            }
         }
+        List<Candidate<T>> found = new ArrayList<>(nearest);
+        Collections.sort(found);
+        return found;
     }
 
     public void refine() {
+        refine(index);
+    }
+
+    void refine(Map<T, Node<T>> index) {
         if (isRefinable()) {
             createChildren();
-            distributePointsToChildren();
-            children().forEach(Node::refine);
+            distributePointsToChildren(index);
+            children().forEach(c -> c.refine(index));
+        }
+    }
+
+    // Writes this subtree in pre-order, each node a kind, and each leaf a point count then its points. Levels
+    // split beyond the max depth by adaptive tuning are written as a single leaf, as tuning isn't written either.
+    void writeTo(ChannelWriter out, PointCodec<? super T> codec) throws IOException {
+        if (isLeaf() || depth <= 0) {
+            out.reserve(1 + Integer.BYTES).put(LEAF).putInt(pointCount);
+            writePoints(out, codec);
+        } else {
+            out.reserve(1).put(INTERNAL);
+            topLeft.writeTo(out, codec);
+            topRight.writeTo(out, codec);
+            bottomLeft.writeTo(out, codec);
+            bottomRight.writeTo(out, codec);
+        }
+    }
+
+    private void writePoints(ChannelWriter out, PointCodec<? super T> codec) throws IOException {
+        if (isLeaf()) {
+            for (int i = 0; i < size; i++) {
+                codec.encode(pointAt(i), out.reserve(codec.getMaxEncodedBytes()));
+            }
+        } else {
+            topLeft.writePoints(out, codec);
+            topRight.writePoints(out, codec);
+            bottomLeft.writePoints(out, codec);
+            bottomRight.writePoints(out, codec);
+        }
+    }
+
+    // Rebuilds this empty leaf's subtree as it was written, without asking the split policy
+    void readFrom(ChannelReader in, PointCodec<T> codec) throws IOException {
+        byte kind = in.require(1).get();
+        if (kind == INTERNAL) {
+            if (depth <= 0) {
+                throw new QuadTreeException("Quadtree data nests deeper than its max depth");
+            }
+            createChildren();
+            topLeft.readFrom(in, codec);
+            topRight.readFrom(in, codec);
+            bottomLeft.readFrom(in, codec);
+            bottomRight.readFrom(in, codec);
+            pointCount = topLeft.pointCount + topRight.pointCount + bottomLeft.pointCount + bottomRight.pointCount;
+        } else if (kind == LEAF) {
+            int count = in.require(Integer.BYTES).getInt();
+            if (count < 0) {
+                throw new QuadTreeException("Negative point count " + count + " in quadtree data");
+            }
+            for (int i = 0; i < count; i++) {
+                T point = in.decode(codec);
+                float x = point.getX();
+                float y = point.getY();
+                if (!encloses(x, y)) {
+                    throw new QuadTreeException("Point " + point + " read into node that doesn't enclose it");
+                }
+                if (index.containsKey(point)) {
+                    throw new QuadTreeException("Point already exists in tree");
+                }
+                append(point, x, y, index);
+            }
+            pointCount = count;
+        } else {
+            throw new QuadTreeException("Unknown node kind " + kind + " in quadtree data");
+        }
+    }
+
+    // Builds this empty leaf's subtree in one pass, partitioning the given range of points in place into
+    // quadrants rather than adding and redistributing them one at a time. Ends up just as refine() would.
+    void load(Object[] points, float[] xs, float[] ys, int from, int to) {
+        if (!isLeaf() || size > 0) {
+            throw new RuntimeException("Points loaded into node that isn't an empty leaf");
+        }
+        pointCount = to - from;
+        if (splitPolicy.shouldSplit(to - from) && depth > -splitPolicy.getExtraDepth() && isDivisible()) {
+            createChildren();
+            // Points on a midline belong to the top or left quadrant, as with findChildEnclosing()
+            int right = partition(points, xs, ys, from, to, xs, box.midX);
+            int bottomLeftStart = partition(points, xs, ys, from, right, ys, box.midY);
+            int bottomRightStart = partition(points, xs, ys, right, to, ys, box.midY);
+            topLeft.load(points, xs, ys, from, bottomLeftStart);
+            bottomLeft.load(points, xs, ys, bottomLeftStart, right);
+            topRight.load(points, xs, ys, right, bottomRightStart);
+            bottomRight.load(points, xs, ys, bottomRightStart, to);
+        } else {
+            this.points = Arrays.copyOfRange(points, from, to);
+            this.xs = Arrays.copyOfRange(xs, from, to);
+            this.ys = Arrays.copyOfRange(ys, from, to);
+            this.size = to - from;
+            for (int i = 0; i < size; i++) {
+                index.put(pointAt(i), this);
+            }
         }
+        // Summaries and states taken of the node while it was empty no longer hold
+        invalidateCaches();
+    }
+
+    // Moves points whose coordinate is at most the midline before the others, returning where the others start
+    private static int partition(Object[] points, float[] xs, float[] ys, int from, int to,
+                                 float[] coordinates, float midline) {
+        int low = from;
+        int high = to - 1;
+        while (true) {
+            while (low <= high && coordinates[low] <= midline) {
+                low++;
+            }
+            while (low <= high && coordinates[high] > midline) {
+                high--;
+            }
+            if (low >= high) {
+                return low;
+            }
+            swap(points, low, high);
+            swap(xs, low, high);
+            swap(ys, low, high);
+        }
+    }
+
+    private static void swap(Object[] array, int i, int j) {
+        Object temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    private static void swap(float[] array, int i, int j) {
+        float temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
     }
 
     private boolean isRefinable() {
-        return points.size() > maxBucketSize && depth > 0;
+        return splitPolicy.shouldSplit(size) && depth > -splitPolicy.getExtraDepth() && isDivisible();
     }
 
     private void createChildren() {
-        topLeft = createChild(box.getTopLeftQuad());
-        topRight = createChild(box.getTopRightQuad());
-        bottomLeft = createChild(box.getBottomLeftQuad());
-        bottomRight= createChild(box.getBottomRightQuad());
+        if (spareChildren != null && spareChildren[0] != null) {
+            topLeft = spareChildren[0];
+            topRight = spareChildren[1];
+            bottomLeft = spareChildren[2];
+            bottomRight = spareChildren[3];
+            Arrays.fill(spareChildren, null);
+            children().forEach(c -> c.splitPolicy = splitPolicy);
+            pool.reused(4);
+        } else {
+            topLeft = createChild(box.getTopLeftQuad());
+            topRight = createChild(box.getTopRightQuad());
+            bottomLeft = createChild(box.getBottomLeftQuad());
+            bottomRight= createChild(box.getBottomRightQuad());
+            pool.created(4);
+        }
+        // The new children have no summaries yet, and an out of date node mustn't have an up to date ancestor
+        invalidateCaches();
     }
 
     private Node<T> createChild(BoundingBox box) {
-        return new Node<>(box, this, maxBucketSize, depth - 1);
+        return new Node<>(box, this, splitPolicy, depth - 1, index, pool);
     }
 
-    private void distributePointsToChildren() {
-        points.forEach(point -> {
-            Node<T> containingChild = findChildEnclosing(point).orElseThrow(() -> new RuntimeException(
+    private void distributePointsToChildren(Map<T, Node<T>> index) {
+        for (int i = 0; i < size; i++) {
+            T point = pointAt(i);
+            Node<T> containingChild = findChildEnclosing(xs[i], ys[i]).orElseThrow(() -> new RuntimeException(
                     "No suitable child for point " + point + "when refining node bounding " + box));
-            containingChild.addPoint(point);
-        });
-        points.clear();
+            containingChild.addPoint(point, xs[i], ys[i], index);
+            containingChild.pointCount++;
+        }
+        clearPoints();
     }
 
     public void coarsen() {
         if (isCoursenable()) {
             gatherPointsFromChildren();
             destroyChildren();
-            if (points.isEmpty() && parent != null) {
+            if (size == 0 && parent != null) {
                 parent.coarsen();
             }
         }
     }
 
-    private boolean isCoursenable() {
+    boolean isCoursenable() {
         if (isLeaf()) {
             // We must check if we have children before investigating them, or else a NPE is thrown
             return false;
         } else {
             boolean childrenAreLeaves = children().allMatch(Node::isLeaf);
-            int combinedChildPointCount = children().mapToInt(c -> c.points.size()).sum();
-            return childrenAreLeaves && combinedChildPointCount <= maxBucketSize;
+            int combinedChildPointCount = children().mapToInt(c -> c.size).sum();
+            return childrenAreLeaves && splitPolicy.canMerge(combinedChildPointCount);
         }
     }
 
     private void gatherPointsFromChildren() {
-        List<T> childPoints = children().flatMap(c -> c.points.stream()).collect(Collectors.toList());
-        points.addAll(childPoints);
+        children().forEach(child -> {
+            for (int i = 0; i < child.size; i++) {
+                append(child.pointAt(i), child.xs[i], child.ys[i], index);
+            }
+        });
     }
 
     private void destroyChildren() {
+        if (pool.offer(4)) {
+            if (spareChildren == null) {
+                @SuppressWarnings("unchecked")
+                Node<T>[] children = (Node<T>[]) new Node<?>[4];
+                spareChildren = children;
+            }
+            spareChildren[0] = topLeft.empty();
+            spareChildren[1] = topRight.empty();
+            spareChildren[2] = bottomLeft.empty();
+            spareChildren[3] = bottomRight.empty();
+        } else {
+            children().forEach(Node::releaseSpareChildren);
+        }
         topLeft = null;
         topRight = null;
         bottomLeft = null;
         bottomRight = null;
+        invalidateCaches();
+    }
+
+    // Only called on leaves whose points have been gathered by their parent
+    private Node<T> empty() {
+        Arrays.fill(points, 0, size, null);
+        size = 0;
+        pointCount = 0;
+        summary = null;
+        state = null;
+        pointsTested = 0;
+        pointsMovedOut = 0;
+        return this;
+    }
+
+    private void releaseSpareChildren() {
+        if (spareChildren != null && spareChildren[0] != null) {
+            for (Node<T> child : spareChildren) {
+                child.releaseSpareChildren();
+            }
+            Arrays.fill(spareChildren, null);
+            pool.released(4);
+        }
     }
 
     public Optional<Node<T>> findAncestorEnclosing(T point) {
@@ -206,13 +982,13 @@ public class Node<T extends Point2D> {
     public Optional<Node<T>> findLeafEnclosing(T point) {
         Node<T> currentNode = this;
         while (currentNode != null && !currentNode.isLeaf()) {
-            currentNode = currentNode.findChildEnclosing(point).orElseGet(null);
+            currentNode = currentNode.findChildEnclosing(point.getX(), point.getY()).orElseGet(null);
         }
         return Optional.ofNullable(currentNode);
     }
 
-    private Optional<Node<T>> findChildEnclosing(T point) {
-        return children().filter(c -> c.encloses(point)).findFirst();
+    private Optional<Node<T>> findChildEnclosing(float x, float y) {
+        return children().filter(c -> c.encloses(x, y)).findFirst();
     }
 
     @Override
@@ -220,7 +996,7 @@ public class Node<T extends Point2D> {
         return "Node{" +
                 "depth=" + depth +
                 ", box=" + box +
-                ", points=" + points.size() +
+                ", points=" + size +
                 '}';
     }
 }
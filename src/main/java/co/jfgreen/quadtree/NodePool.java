@@ -0,0 +1,76 @@
+package co.jfgreen.quadtree;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps count of the nodes a tree holds on to for reuse, up to a capacity, along with how many nodes it has
+// had to create and how many it has been able to reuse. Nodes whose region repeatedly splits and merges keep
+// their children when merged and take them back when split again, rather than allocating new ones.
+// Counts are atomic as subtrees may be refined in parallel.
+public class NodePool {
+
+    private final int capacity;
+    private final AtomicInteger pooledNodes = new AtomicInteger();
+    private final LongAdder createdNodes = new LongAdder();
+    private final LongAdder reusedNodes = new LongAdder();
+    private final LongAdder discardedNodes = new LongAdder();
+
+    NodePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Reserves room for the nodes, returning false if there is none
+    boolean offer(int nodes) {
+        while (true) {
+            int pooled = pooledNodes.get();
+            if (pooled + nodes > capacity) {
+                discardedNodes.add(nodes);
+                return false;
+            }
+            if (pooledNodes.compareAndSet(pooled, pooled + nodes)) {
+                return true;
+            }
+        }
+    }
+
+    void reused(int nodes) {
+        pooledNodes.addAndGet(-nodes);
+        reusedNodes.add(nodes);
+    }
+
+    void created(int nodes) {
+        createdNodes.add(nodes);
+    }
+
+    // Pooled nodes let go of, as they were held by a node that couldn't be pooled itself
+    void released(int nodes) {
+        pooledNodes.addAndGet(-nodes);
+        discardedNodes.add(nodes);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPooledNodes() {
+        return pooledNodes.get();
+    }
+
+    public long getCreatedNodes() {
+        return createdNodes.sum();
+    }
+
+    public long getReusedNodes() {
+        return reusedNodes.sum();
+    }
+
+    public long getDiscardedNodes() {
+        return discardedNodes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pooled:%d/%d, Created:%d, Reused:%d, Discarded:%d",
+                getPooledNodes(), capacity, getCreatedNodes(), getReusedNodes(), getDiscardedNodes());
+    }
+}
@@ -0,0 +1,15 @@
+package co.jfgreen.quadtree;
+
+import java.nio.ByteBuffer;
+
+// Turns the points of a tree into bytes and back, for QuadTree.writeTo() and QuadTree.readFrom()
+public interface PointCodec<T extends Point2D> {
+
+    // The most bytes encode() will write for any point, which the buffer is guaranteed to have room for
+    int getMaxEncodedBytes();
+
+    void encode(T point, ByteBuffer buffer);
+
+    // Reads a point written by encode(), which must have the position it had when it was written
+    T decode(ByteBuffer buffer);
+}
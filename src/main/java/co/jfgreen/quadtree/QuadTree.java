@@ -1,13 +1,49 @@
 package co.jfgreen.quadtree;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class QuadTree<T extends Point2D> {
+import static java.util.stream.Collectors.toList;
+
+public class QuadTree<T extends Point2D> implements SpatialIndex<T> {
 
     private final Node<T> root;
+    private final NodePool nodePool;
+    private final SplitPolicy splitPolicy;
+    // For policies that hold back merges, the nodes that could be merged and the update they were first seen on
+    private final Map<Node<T>, Integer> mergeCandidates = new HashMap<>();
+    private int updateCount;
+    private AdaptiveTuning adaptiveTuning;
+    // Published by the updating thread for other threads to query without locking
+    private volatile ImmutableNode<T> snapshot;
+    private boolean publishingSnapshots;
+    private long stateVersion;
+    // Identity keyed, so points that are equal() but distinct can still live in the same tree
+    private final Map<T, Node<T>> index = new IdentityHashMap<>();
+    // Points marked for updateMoved(), each with the position moveTo() gave it, or null if marked by moved()
+    private final Map<T, Position> movedPoints = new IdentityHashMap<>();
+    // Reused between queries to keep them allocation free
+    private final ScratchSpace<Deque<Node<T>>> stacks = new ScratchSpace<>(ArrayDeque::new);
+    private final ScratchSpace<ReusableCircle> circles = new ScratchSpace<>(ReusableCircle::new);
 
     public static int DEFAULT_MAX_BUCKET_SIZE = 100;
     public static int DEFAULT_MAX_DEPTH = 5;
+    public static int DEFAULT_MAX_POOLED_NODES = 1024;
+    // Splits parallel work into up to 64 subtrees, enough for work stealing to even out crowded regions
+    public static int PARALLEL_SPLIT_LEVELS = 3;
+
+    // Written trees start with the magic, the format version, the bounds, the root's depth and the point count
+    private static final int FORMAT_MAGIC = 0x51545245;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
 
     private void validatePositive(int number, String name) {
         if (number < 1) {
@@ -15,59 +51,399 @@ public class QuadTree<T extends Point2D> {
         }
     }
 
-    //TODO: Maintain a hashmap of point -> node? This could speedup various operations
-    // Example 1: update by iterating map, then we don't have to iterate empty leaves:
-    // Example 2: easy duplicate check on 'add'
-    // Example 3: easy removal
-
     //TODO: Think about having a builder pattern
     public QuadTree(float x, float y, float width, float height) {
        this(x, y, width, height, DEFAULT_MAX_BUCKET_SIZE, DEFAULT_MAX_DEPTH);
     }
 
     public QuadTree(float x, float y, float width, float height, int maxBucketSize, int maxDepth) {
-        validatePositive(maxBucketSize, "Max bucket size");
+        this(x, y, width, height, maxBucketSize, maxDepth, DEFAULT_MAX_POOLED_NODES);
+    }
+
+    public QuadTree(float x, float y, float width, float height, int maxBucketSize, int maxDepth,
+                    int maxPooledNodes) {
+        this(x, y, width, height, new ThresholdSplitPolicy(maxBucketSize), maxDepth, maxPooledNodes);
+    }
+
+    public QuadTree(float x, float y, float width, float height, SplitPolicy splitPolicy, int maxDepth) {
+        this(x, y, width, height, splitPolicy, maxDepth, DEFAULT_MAX_POOLED_NODES);
+    }
+
+    // Up to maxPooledNodes nodes are kept for reuse once their region no longer needs them, zero disables this
+    public QuadTree(float x, float y, float width, float height, SplitPolicy splitPolicy, int maxDepth,
+                    int maxPooledNodes) {
+        this(new BoundingBox(x, y, x + width, y + height), splitPolicy, maxDepth, maxPooledNodes);
+    }
+
+    private QuadTree(BoundingBox box, SplitPolicy splitPolicy, int maxDepth, int maxPooledNodes) {
         validatePositive(maxDepth, "Max tree depth");
-        BoundingBox box = new BoundingBox(x, y, x + width, y + height);
-        root = new Node<>(box, maxBucketSize, maxDepth);
+        if (maxPooledNodes < 0) {
+            throw new IllegalArgumentException("Max pooled nodes must not be negative");
+        }
+        this.splitPolicy = splitPolicy;
+        nodePool = new NodePool(maxPooledNodes);
+        root = new Node<>(box, splitPolicy, maxDepth, index, nodePool);
     }
 
+    public static <T extends Point2D> QuadTree<T> build(Collection<T> points,
+                                                        float x, float y, float width, float height) {
+        return build(points, x, y, width, height, DEFAULT_MAX_BUCKET_SIZE, DEFAULT_MAX_DEPTH);
+    }
+
+    // Builds a tree from all of its points at once, which is much quicker than adding them one by one
+    public static <T extends Point2D> QuadTree<T> build(Collection<T> points, float x, float y, float width,
+                                                        float height, int maxBucketSize, int maxDepth) {
+        QuadTree<T> tree = new QuadTree<>(x, y, width, height, maxBucketSize, maxDepth);
+        tree.load(points);
+        return tree;
+    }
+
+    // Writes the tree's bounds, depth and nodes, encoding each point with the given codec. Only the structure and
+    // points are written, split policies and adaptive tuning are given again when the tree is read.
+    public void writeTo(FileChannel channel, PointCodec<? super T> codec) throws IOException {
+        ChannelWriter out = new ChannelWriter(channel, codec.getMaxEncodedBytes());
+        BoundingBox box = root.getBounds();
+        out.reserve(HEADER_BYTES)
+                .putInt(FORMAT_MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putFloat(box.startX)
+                .putFloat(box.startY)
+                .putFloat(box.endX)
+                .putFloat(box.endY)
+                .putInt(root.getDepth())
+                .putInt(index.size());
+        root.writeTo(out, codec);
+        out.flush();
+    }
+
+    public static <T extends Point2D> QuadTree<T> readFrom(FileChannel channel, PointCodec<T> codec)
+            throws IOException {
+        return readFrom(channel, codec, new ThresholdSplitPolicy(DEFAULT_MAX_BUCKET_SIZE), DEFAULT_MAX_POOLED_NODES);
+    }
+
+    // Reads a tree written by writeTo(), rebuilding its nodes just as they were rather than adding each point
+    public static <T extends Point2D> QuadTree<T> readFrom(FileChannel channel, PointCodec<T> codec,
+                                                           SplitPolicy splitPolicy, int maxPooledNodes)
+            throws IOException {
+        ChannelReader in = new ChannelReader(channel, codec.getMaxEncodedBytes());
+        ByteBuffer header = in.require(HEADER_BYTES);
+        if (header.getInt() != FORMAT_MAGIC) {
+            throw new QuadTreeException("Channel does not hold a quadtree");
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new QuadTreeException("Unsupported quadtree format version " + version);
+        }
+        BoundingBox box;
+        try {
+            box = new BoundingBox(header.getFloat(), header.getFloat(), header.getFloat(), header.getFloat());
+        } catch (IllegalArgumentException e) {
+            throw new QuadTreeException("Quadtree has invalid bounds");
+        }
+        int maxDepth = header.getInt();
+        if (maxDepth < 1) {
+            throw new QuadTreeException("Quadtree has invalid max depth " + maxDepth);
+        }
+        QuadTree<T> tree = new QuadTree<>(box, splitPolicy, maxDepth, maxPooledNodes);
+        int pointCount = header.getInt();
+        tree.root.readFrom(in, codec);
+        if (tree.index.size() != pointCount) {
+            throw new QuadTreeException("Read " + tree.index.size() + " points but expected " + pointCount);
+        }
+        return tree;
+    }
+
+    private void load(Collection<T> points) {
+        Object[] loadedPoints = new Object[points.size()];
+        float[] xs = new float[loadedPoints.length];
+        float[] ys = new float[loadedPoints.length];
+        int i = 0;
+        for (T point : points) {
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            if (!root.encloses(xs[i], ys[i])) {
+                index.clear();
+                throw new IllegalArgumentException("Point is outside tree bounds.");
+            }
+            // The root stands in for the point's leaf until the load puts it in one
+            if (index.put(point, root) != null) {
+                index.clear();
+                throw new QuadTreeException("Point already exists in tree");
+            }
+            loadedPoints[i++] = point;
+        }
+        root.load(loadedPoints, xs, ys, 0, loadedPoints.length);
+    }
+
+    @Override
     public void add(T point) {
         if (!root.encloses(point)) {
             throw new IllegalArgumentException("Point is outside tree bounds.");
         }
+        if (contains(point)) {
+            throw new QuadTreeException("Point already exists in tree");
+        }
         Node<T> destination = findLeafEnclosing(root, point);
         destination.addPoint(point);
         destination.refine();
     }
 
+    // Loads the points in one go if the tree is a single empty leaf. A tree emptied by removals can still have
+    // children, if its split policy is holding back their merge, so those points are added one at a time.
+    @Override
     public void addAll(Collection<T> points) {
-        points.forEach(this::add);
+        if (root.isEmptyLeaf()) {
+            load(points);
+        } else {
+            points.forEach(this::add);
+        }
+    }
+
+    @Override
+    public boolean remove(T point) {
+        Node<T> home = index.get(point);
+        if (home == null) {
+            return false;
+        }
+        home.removePoint(point);
+        home.getParent().ifPresent(this::coarsen);
+        movedPoints.remove(point);
+        return true;
+    }
+
+    @Override
+    public boolean contains(T point) {
+        return index.containsKey(point);
+    }
+
+    @Override
+    public void moved(T point) {
+        findHome(point);
+        movedPoints.put(point, null);
+    }
+
+    // Tells the tree a point is moving to (x, y). If it stays inside its current leaf it is updated straight
+    // away, otherwise it is marked for updateMoved() along with (x, y), which the point must report by then.
+    @Override
+    public void moveTo(T point, float x, float y) {
+        if (!findHome(point).updatePosition(point, x, y)) {
+            movedPoints.put(point, new Position(x, y));
+        }
+    }
+
+    private static class Position {
+        private final float x;
+        private final float y;
+
+        private Position(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        private boolean isReportedBy(Point2D point) {
+            return Float.compare(x, point.getX()) == 0 && Float.compare(y, point.getY()) == 0;
+        }
+    }
+
+    private Node<T> findHome(T point) {
+        Node<T> home = index.get(point);
+        if (home == null) {
+            throw new QuadTreeException("Point does not exist in tree");
+        }
+        return home;
+    }
+
+    public NodePool getNodePool() {
+        return nodePool;
     }
 
+    // Tunes bucket sizes and depth region by region, from the costs seen since it last ran. Null turns it off,
+    // leaving regions as they were last tuned.
+    public void setAdaptiveTuning(AdaptiveTuning adaptiveTuning) {
+        this.adaptiveTuning = adaptiveTuning;
+    }
+
+    // Subtrees that haven't changed since the last state was taken are shared with it, rather than copied. The
+    // version goes up each time the tree has changed since the last state, and is given to the nodes that changed.
     public ImmutableNode<T> getState() {
-        return root.getState();
+        if (!root.hasCurrentState()) {
+            stateVersion++;
+        }
+        return root.getState(stateVersion);
     }
 
+    // Once on, the state of the tree is published at the end of every update, and straight away
+    public void setPublishingSnapshots(boolean publishingSnapshots) {
+        this.publishingSnapshots = publishingSnapshots;
+        if (publishingSnapshots) {
+            snapshot = getState();
+        }
+    }
+
+    // The state published at the end of the last update. Safe to call, and query, from any thread while the tree
+    // is being updated. Points added or removed since then show up in the next one.
+    public ImmutableNode<T> getSnapshot() {
+        ImmutableNode<T> published = snapshot;
+        if (published == null) {
+            throw new QuadTreeException("Snapshots have not been published");
+        }
+        return published;
+    }
+
+    // The tree caches point coordinates, which are refreshed here
+    @Override
     public void update() {
+        update(QuadTree::pointOutsideTree);
+    }
+
+    @Override
+    public void updateMoved() {
+        updateMoved(QuadTree::pointOutsideTree);
+    }
+
+    private static void pointOutsideTree(Point2D point) {
+        throw new RuntimeException("No suitable ancestor for point " + point);
+    }
+
+    // Points that have left the tree entirely are passed on, and left where they were, for the caller to deal with
+    void update(Consumer<? super T> pointsOutsideTree) {
+        Collection<T> pointsOutsideHome = new ArrayList<>();
+        root.forEachLeaf(leaf -> leaf.updatePositions(pointsOutsideHome));
+        movedPoints.clear();
+        relocate(pointsOutsideHome, pointsOutsideTree);
+        endUpdate();
+    }
+
+    // Checks that points given a position by moveTo() report it before any are moved, so a point that doesn't
+    // fails the update rather than being put somewhere it isn't
+    void updateMoved(Consumer<? super T> pointsOutsideTree) {
+        movedPoints.forEach((p, position) -> {
+            if (position != null && !position.isReportedBy(p)) {
+                throw new QuadTreeException("Point " + p + " was moved to (" + position.x + ", " + position.y +
+                        ") but reports (" + p.getX() + ", " + p.getY() + ")");
+            }
+        });
+        Collection<T> pointsOutsideHome = movedPoints.keySet().stream()
+                .filter(p -> !index.get(p).updatePosition(p, p.getX(), p.getY()))
+                .collect(toList());
+        movedPoints.clear();
+        relocate(pointsOutsideHome, pointsOutsideTree);
+        endUpdate();
+    }
+
+    // Updates each subtree on the pool, re-homing points that have stayed inside their subtree there. Tasks only
+    // read the index, recording the new leaves in one of their own, and don't invalidate the ancestors the
+    // subtrees share; both are done here after the join. Points that have crossed into another subtree are then
+    // re-homed one by one, as are vacated nodes coarsened, since coarsening can ripple up past the subtree. Ends up
+    // just as update() would.
+    public void update(ForkJoinPool pool) {
+        List<Node<T>> subtrees = new ArrayList<>();
+        root.collectSubtrees(PARALLEL_SPLIT_LEVELS, subtrees);
+        subtrees.forEach(Node::beginParallelUpdate);
+        List<ForkJoinTask<SubtreeUpdate<T>>> tasks = new ArrayList<>(subtrees.size());
+        subtrees.forEach(subtree -> tasks.add(pool.submit(() -> updateSubtree(subtree))));
+        List<T> pointsOutsideSubtree = new ArrayList<>();
+        Set<Node<T>> parentsOfVacatedNodes = new HashSet<>();
+        try {
+            tasks.forEach(task -> {
+                SubtreeUpdate<T> update = task.join();
+                index.putAll(update.newLeaves);
+                pointsOutsideSubtree.addAll(update.pointsOutsideSubtree);
+                parentsOfVacatedNodes.addAll(update.parentsOfVacatedNodes);
+            });
+        } finally {
+            subtrees.forEach(Node::endParallelUpdate);
+        }
+        movedPoints.clear();
+        relocate(pointsOutsideSubtree, QuadTree::pointOutsideTree);
+        parentsOfVacatedNodes.forEach(this::coarsen);
+        endUpdate();
+    }
+
+    private static class SubtreeUpdate<T extends Point2D> {
+        private final Map<T, Node<T>> newLeaves = new IdentityHashMap<>();
+        private final List<T> pointsOutsideSubtree = new ArrayList<>();
+        private final Set<Node<T>> parentsOfVacatedNodes = new HashSet<>();
+    }
+
+    private SubtreeUpdate<T> updateSubtree(Node<T> subtree) {
+        SubtreeUpdate<T> update = new SubtreeUpdate<>();
+        List<T> pointsOutsideHome = new ArrayList<>();
+        subtree.forEachLeaf(leaf -> leaf.updatePositions(pointsOutsideHome));
+        Set<Node<T>> populatedNodes = new HashSet<>();
+        for (T p : pointsOutsideHome) {
+            if (!subtree.encloses(p)) {
+                update.pointsOutsideSubtree.add(p);
+                continue;
+            }
+            // The point left its leaf but not the subtree, so its nearest enclosing ancestor is in the subtree
+            Node<T> leaf = index.get(p);
+            Node<T> newHome = findLeafEnclosing(leaf.findAncestorEnclosing(p).get(), p);
+            leaf.transferPoint(p, newHome, update.newLeaves);
+            leaf.getParent().ifPresent(update.parentsOfVacatedNodes::add);
+            populatedNodes.add(newHome);
+        }
+        populatedNodes.forEach(node -> node.refine(update.newLeaves));
+        return update;
+    }
+
+    private void relocate(Collection<T> pointsOutsideHome, Consumer<? super T> pointsOutsideTree) {
         Set<Node<T>> parentsOfVacatedNodes = new HashSet<>();
         Set<Node<T>> populatedNodes = new HashSet<>();
-        root.leaves().forEach(leaf -> leaf.getPointsOutsideBounds().forEach(p -> {
+        pointsOutsideHome.forEach(p -> {
             //TODO: Optimise by searching from root in certain cases.
-            Node<T> ancestor = findAncestorEnclosing(leaf, p);
-            Node<T> newHome = findLeafEnclosing(ancestor, p);
-            leaf.removePoint(p);
-            newHome.addPoint(p);
+            Node<T> leaf = index.get(p);
+            Optional<Node<T>> ancestor = leaf.findAncestorEnclosing(p);
+            if (!ancestor.isPresent()) {
+                pointsOutsideTree.accept(p);
+                return;
+            }
+            Node<T> newHome = findLeafEnclosing(ancestor.get(), p);
+            leaf.transferPoint(p, newHome);
             leaf.getParent().ifPresent(parentsOfVacatedNodes::add);
             populatedNodes.add(newHome);
-        }));
+        });
         populatedNodes.forEach(Node::refine);
-        parentsOfVacatedNodes.forEach(Node::coarsen);
+        parentsOfVacatedNodes.forEach(this::coarsen);
+    }
+
+    private void coarsen(Node<T> node) {
+        if (splitPolicy.mergesImmediately()) {
+            node.coarsen();
+        } else if (node.isCoursenable()) {
+            mergeCandidates.putIfAbsent(node, updateCount);
+        }
     }
 
-    private Node<T> findAncestorEnclosing(Node<T> node, T point) {
-        return node.findAncestorEnclosing(point).
-                orElseThrow(() -> new RuntimeException("No suitable ancestor for point " + point));
+    private void endUpdate() {
+        mergeCandidates();
+        if (adaptiveTuning != null && adaptiveTuning.isDue(updateCount)) {
+            adaptiveTuning.tune(root, this::coarsen);
+        }
+        if (publishingSnapshots) {
+            snapshot = getState();
+        }
+    }
+
+    // Run at the end of every update. Candidates that can no longer merge are dropped, and on every merge
+    // interval those that have been able to for long enough are merged.
+    private void mergeCandidates() {
+        updateCount++;
+        if (mergeCandidates.isEmpty()) {
+            return;
+        }
+        boolean sweep = updateCount % splitPolicy.getMergeInterval() == 0;
+        Iterator<Map.Entry<Node<T>, Integer>> candidates = mergeCandidates.entrySet().iterator();
+        while (candidates.hasNext()) {
+            Map.Entry<Node<T>, Integer> candidate = candidates.next();
+            Node<T> node = candidate.getKey();
+            if (!node.isCoursenable()) {
+                candidates.remove();
+            } else if (sweep && updateCount - candidate.getValue() >= splitPolicy.getQuietUpdates()) {
+                node.coarsen();
+                candidates.remove();
+            }
+        }
     }
 
     private Node<T> findLeafEnclosing(Node<T> node, T point) {
@@ -75,12 +451,90 @@ public class QuadTree<T extends Point2D> {
                 () -> new RuntimeException("No suitable home for point " + point));
     }
 
-    public Collection<T> queryByBoundingBox(float x, float y, float width, float height) {
-        return root.queryByShape(new BoundingBox(x, y, x+width, y+height));
+    @Override
+    public void queryByPointRadius(float x, float y, float radius, Consumer<? super T> consumer) {
+        ReusableCircle circle = circles.borrow();
+        try {
+            query(circle.set(x, y, radius), consumer);
+        } finally {
+            circles.giveBack(circle);
+        }
+    }
+
+    // Safe to call from many threads at once, or from inside another query's consumer, as long as the tree
+    // isn't being changed at the same time
+    @Override
+    public void query(Shape area, Consumer<? super T> consumer) {
+        Deque<Node<T>> stack = stacks.borrow();
+        try {
+            root.queryByShape(area, consumer, stack);
+        } finally {
+            stacks.giveBack(stack);
+        }
+    }
+
+    // Lazy, so searching stops as soon as the stream does, for example at the first point found by anyMatch().
+    // The tree must not be changed while the stream is in use.
+    @Override
+    public Stream<T> stream(Shape area) {
+        return StreamSupport.stream(root.spliterator(area), false);
+    }
+
+    // Subtrees entirely inside the area are counted without being visited
+    @Override
+    public int count(Shape area) {
+        Deque<Node<T>> stack = stacks.borrow();
+        try {
+            return root.countInShape(area, stack);
+        } finally {
+            stacks.giveBack(stack);
+        }
+    }
+
+    // Folds the points in the area into the aggregator, which is returned. Subtrees entirely inside the area are
+    // summarised as a whole for aggregators that accept summaries, such as Summary itself.
+    public <A extends Aggregator<? super T>> A aggregate(Shape area, A aggregator) {
+        Deque<Node<T>> stack = stacks.borrow();
+        try {
+            root.aggregate(area, aggregator, stack);
+        } finally {
+            stacks.giveBack(stack);
+        }
+        return aggregator;
+    }
+
+    // One descent for the whole batch, rather than one per area
+    @Override
+    public <S extends Shape> void queryAll(List<S> areas, BiConsumer<? super S, ? super T> consumer) {
+        root.queryAll(areas, consumer);
+    }
+
+    // Each subtree is queried for the whole batch on the pool, so the consumer must be thread safe
+    public <S extends Shape> void queryAll(List<S> areas, BiConsumer<? super S, ? super T> consumer,
+                                           ForkJoinPool pool) {
+        List<Node<T>> subtrees = new ArrayList<>();
+        root.collectSubtrees(PARALLEL_SPLIT_LEVELS, subtrees);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(subtrees.size());
+        subtrees.forEach(subtree -> tasks.add(pool.submit(() -> subtree.queryAll(areas, consumer))));
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    // Every pair of points no further than distance apart, each pair passed to the consumer once, in either order
+    public void pairsWithin(float distance, BiConsumer<? super T, ? super T> consumer) {
+        if (!(distance >= 0)) {
+            throw new IllegalArgumentException("Distance must be zero or more");
+        }
+        root.forEachPairWithin(distance * distance, consumer);
+    }
+
+    @Override
+    public List<T> nearest(float x, float y, int k, float maxDistance) {
+        validatePositive(k, "Neighbour count");
+        return root.findNearest(x, y, k, maxDistance);
     }
 
-    public Collection<T> queryByPointRadius(float x, float y, float radius) {
-        return root.queryByShape(new Circle(x, y, radius));
+    List<Candidate<T>> nearestCandidates(float x, float y, int k, float maxDistance) {
+        return root.findNearestCandidates(x, y, k, maxDistance);
     }
 
 
@@ -0,0 +1,46 @@
+package co.jfgreen.quadtree;
+
+// A circle that can be moved and resized, so a tree can run radius queries without allocating a Circle each time
+class ReusableCircle implements Shape {
+
+    private float x;
+    private float y;
+    private float radius;
+
+    ReusableCircle set(float x, float y, float radius) {
+        this.x = x;
+        this.y = y;
+        this.radius = Circle.validRadius(radius);
+        return this;
+    }
+
+    @Override
+    public boolean contains(float x, float y) {
+        return Circle.contains(this.x, this.y, radius, x, y);
+    }
+
+    @Override
+    public void contains(float[] xs, float[] ys, int n, boolean[] inside) {
+        Circle.contains(x, y, radius, xs, ys, n, inside);
+    }
+
+    @Override
+    public boolean intersects(BoundingBox box) {
+        return intersects(box.startX, box.startY, box.endX, box.endY);
+    }
+
+    @Override
+    public boolean contains(BoundingBox box) {
+        return contains(box.startX, box.startY, box.endX, box.endY);
+    }
+
+    @Override
+    public boolean intersects(float startX, float startY, float endX, float endY) {
+        return Circle.intersects(x, y, radius, startX, startY, endX, endY);
+    }
+
+    @Override
+    public boolean contains(float startX, float startY, float endX, float endY) {
+        return Circle.contains(x, y, radius, startX, startY, endX, endY);
+    }
+}
@@ -0,0 +1,74 @@
+package co.jfgreen.quadtree;
+
+// Wraps a tree's split policy for a region that adaptive tuning has adjusted. Point counts are scaled by a power
+// of two before being passed on, so a negative scale splits and merges smaller buckets and a positive one larger
+// ones, and the region may split some levels beyond the tree's max depth.
+class ScaledSplitPolicy implements SplitPolicy {
+
+    private final SplitPolicy base;
+    private final int scale;
+    private final int extraDepth;
+
+    ScaledSplitPolicy(SplitPolicy base, int scale, int extraDepth) {
+        this.base = base;
+        this.scale = scale;
+        this.extraDepth = extraDepth;
+    }
+
+    // The policy a node has before tuning, wrapped with no scaling if it isn't already
+    static ScaledSplitPolicy of(SplitPolicy policy) {
+        if (policy instanceof ScaledSplitPolicy) {
+            return (ScaledSplitPolicy) policy;
+        }
+        return new ScaledSplitPolicy(policy, 0, 0);
+    }
+
+    ScaledSplitPolicy withScale(int scale) {
+        return scale == this.scale ? this : new ScaledSplitPolicy(base, scale, extraDepth);
+    }
+
+    ScaledSplitPolicy withExtraDepth(int extraDepth) {
+        return extraDepth == this.extraDepth ? this : new ScaledSplitPolicy(base, scale, extraDepth);
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    private int scaled(int pointCount) {
+        if (scale >= 0) {
+            return pointCount >> scale;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (long) pointCount << -scale);
+    }
+
+    @Override
+    public boolean shouldSplit(int pointCount) {
+        return base.shouldSplit(scaled(pointCount));
+    }
+
+    @Override
+    public boolean canMerge(int pointCount) {
+        return base.canMerge(scaled(pointCount));
+    }
+
+    @Override
+    public int getExtraDepth() {
+        return extraDepth;
+    }
+
+    @Override
+    public int getQuietUpdates() {
+        return base.getQuietUpdates();
+    }
+
+    @Override
+    public int getMergeInterval() {
+        return base.getMergeInterval();
+    }
+
+    @Override
+    public boolean mergesImmediately() {
+        return base.mergesImmediately();
+    }
+}
@@ -0,0 +1,27 @@
+package co.jfgreen.quadtree;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Scratch space, such as a query's stack, that a tree keeps one of to reuse between calls. A call borrows it for
+// as long as it runs, and a call that finds it already borrowed, by another thread or by a query made from inside
+// a consumer, makes a fresh one instead. So queries stay allocation free in the common case, while still being
+// safe to nest and to run from many threads at once.
+final class ScratchSpace<S> {
+
+    private final Supplier<S> factory;
+    private final AtomicReference<S> spare = new AtomicReference<>();
+
+    ScratchSpace(Supplier<S> factory) {
+        this.factory = factory;
+    }
+
+    S borrow() {
+        S scratch = spare.getAndSet(null);
+        return scratch != null ? scratch : factory.get();
+    }
+
+    void giveBack(S scratch) {
+        spare.set(scratch);
+    }
+}
@@ -6,4 +6,22 @@ public interface Shape {
     boolean intersects(BoundingBox box);
 
     boolean contains(BoundingBox box);
+
+    // The same tests given the edges of a box, for trees that don't keep a BoundingBox per node
+
+    default boolean intersects(float startX, float startY, float endX, float endY) {
+        return intersects(new BoundingBox(startX, startY, endX, endY));
+    }
+
+    default boolean contains(float startX, float startY, float endX, float endY) {
+        return contains(new BoundingBox(startX, startY, endX, endY));
+    }
+
+    // Sets inside[i] for each of the first n points. Implementations keep the loop free of branches and calls so
+    // the JIT can vectorise it.
+    default void contains(float[] xs, float[] ys, int n, boolean[] inside) {
+        for (int i = 0; i < n; i++) {
+            inside[i] = contains(xs[i], ys[i]);
+        }
+    }
 }
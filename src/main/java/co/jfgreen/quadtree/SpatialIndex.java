@@ -0,0 +1,83 @@
+package co.jfgreen.quadtree;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// The operations shared by the different tree implementations
+public interface SpatialIndex<T extends Point2D> {
+
+    void add(T point);
+
+    default void addAll(Collection<T> points) {
+        points.forEach(this::add);
+    }
+
+    boolean remove(T point);
+
+    boolean contains(T point);
+
+    // Marks a point to be re-homed by the next call to updateMoved()
+    void moved(T point);
+
+    // Tells the index a point is moving to (x, y), the point must report (x, y) by the next updateMoved()
+    void moveTo(T point, float x, float y);
+
+    // Queries see points where they were as of the last update
+    void update();
+
+    // Like update(), but only considers points reported through moved() or moveTo()
+    void updateMoved();
+
+    void query(Shape area, Consumer<? super T> consumer);
+
+    default int count(Shape area) {
+        int[] count = {0};
+        query(area, p -> count[0]++);
+        return count[0];
+    }
+
+    default void query(Shape area, Collection<? super T> foundPoints) {
+        query(area, foundPoints::add);
+    }
+
+    // The points in the area as a stream, which implementations may find lazily as it is consumed
+    default Stream<T> stream(Shape area) {
+        List<T> foundPoints = new ArrayList<>();
+        query(area, foundPoints);
+        return foundPoints.stream();
+    }
+
+    default Collection<T> queryByBoundingBox(float x, float y, float width, float height) {
+        Collection<T> foundPoints = new ArrayList<>();
+        query(new BoundingBox(x, y, x+width, y+height), foundPoints);
+        return foundPoints;
+    }
+
+    default Collection<T> queryByPointRadius(float x, float y, float radius) {
+        Collection<T> foundPoints = new ArrayList<>();
+        query(new Circle(x, y, radius), foundPoints);
+        return foundPoints;
+    }
+
+    void queryByPointRadius(float x, float y, float radius, Consumer<? super T> consumer);
+
+    // Runs a batch of queries, passing each point found to the consumer along with the area it was found in
+    default <S extends Shape> void queryAll(List<S> areas, BiConsumer<? super S, ? super T> consumer) {
+        for (S area : areas) {
+            query(area, p -> consumer.accept(area, p));
+        }
+    }
+
+    default Optional<T> nearest(float x, float y) {
+        return nearest(x, y, 1).stream().findFirst();
+    }
+
+    default List<T> nearest(float x, float y, int k) {
+        return nearest(x, y, k, Float.POSITIVE_INFINITY);
+    }
+
+    // Up to k points no further than maxDistance from (x, y), nearest first
+    List<T> nearest(float x, float y, int k, float maxDistance);
+}
@@ -0,0 +1,31 @@
+package co.jfgreen.quadtree;
+
+// Decides when a tree splits a leaf into quadrants, and when it merges them back
+public interface SplitPolicy {
+
+    // Whether a leaf holding this many points should be split, if it isn't already at the maximum depth
+    boolean shouldSplit(int pointCount);
+
+    // Whether a node whose children are all leaves, holding this many points between them, could be merged
+    boolean canMerge(int pointCount);
+
+    // Levels a node may split beyond the tree's max depth
+    default int getExtraDepth() {
+        return 0;
+    }
+
+    // The number of updates in a row a node must be able to merge for before it is merged
+    default int getQuietUpdates() {
+        return 0;
+    }
+
+    // Merges are carried out together every this many updates, rather than as points leave
+    default int getMergeInterval() {
+        return 1;
+    }
+
+    // Whether nodes are merged as soon as they can be, as they were before policies could defer merging
+    default boolean mergesImmediately() {
+        return getQuietUpdates() == 0 && getMergeInterval() == 1;
+    }
+}
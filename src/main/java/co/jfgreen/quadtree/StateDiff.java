@@ -0,0 +1,76 @@
+package co.jfgreen.quadtree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+// What changed between two states of a tree, as found by ImmutableNode.diff()
+public class StateDiff<T extends Point2D> {
+
+    // Positions packed into a long, from the parts of each state that weren't shared
+    private final Map<T, Long> oldPositions = new IdentityHashMap<>();
+    private final Map<T, Long> newPositions = new IdentityHashMap<>();
+    private final List<T> added = new ArrayList<>();
+    private final List<T> removed = new ArrayList<>();
+    private final List<T> moved = new ArrayList<>();
+    private final List<ImmutableNode<T>> changedNodes = new ArrayList<>();
+
+    StateDiff() {
+    }
+
+    private static long pack(float x, float y) {
+        return ((long) Float.floatToIntBits(x) << 32) | (Float.floatToIntBits(y) & 0xffffffffL);
+    }
+
+    void oldPoint(T point, float x, float y) {
+        oldPositions.put(point, pack(x, y));
+    }
+
+    void newPoint(T point, float x, float y) {
+        newPositions.put(point, pack(x, y));
+    }
+
+    void changedNode(ImmutableNode<T> node) {
+        changedNodes.add(node);
+    }
+
+    // A point can only leave a shared subtree by changing it, so every point that changed is in both maps or in
+    // just the one it was added to or removed from
+    void finish() {
+        newPositions.forEach((point, position) -> {
+            Long oldPosition = oldPositions.remove(point);
+            if (oldPosition == null) {
+                added.add(point);
+            } else if (!oldPosition.equals(position)) {
+                moved.add(point);
+            }
+        });
+        removed.addAll(oldPositions.keySet());
+        oldPositions.clear();
+        newPositions.clear();
+    }
+
+    public List<T> getAdded() {
+        return unmodifiableList(added);
+    }
+
+    public List<T> getRemoved() {
+        return unmodifiableList(removed);
+    }
+
+    public List<T> getMoved() {
+        return unmodifiableList(moved);
+    }
+
+    // Nodes in the new state that aren't shared with the old one
+    public List<ImmutableNode<T>> getChangedNodes() {
+        return unmodifiableList(changedNodes);
+    }
+
+    public boolean isEmpty() {
+        return changedNodes.isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package co.jfgreen.quadtree;
+
+// The count, coordinate sums and extent of a group of points. Nodes keep one for their subtree, and one can be
+// passed to QuadTree.aggregate() to summarise the points in an area.
+public class Summary implements Aggregator<Object> {
+
+    private int count;
+    // Summed as doubles so that large subtrees don't lose the contribution of each point
+    private double sumX;
+    private double sumY;
+    private float minX;
+    private float minY;
+    private float maxX;
+    private float maxY;
+
+    public Summary() {
+        minX = Float.POSITIVE_INFINITY;
+        minY = Float.POSITIVE_INFINITY;
+        maxX = Float.NEGATIVE_INFINITY;
+        maxY = Float.NEGATIVE_INFINITY;
+    }
+
+    void add(float x, float y) {
+        count++;
+        sumX += x;
+        sumY += y;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    void add(Summary other) {
+        count += other.count;
+        sumX += other.sumX;
+        sumY += other.sumY;
+        minX = Math.min(minX, other.minX);
+        minY = Math.min(minY, other.minY);
+        maxX = Math.max(maxX, other.maxX);
+        maxY = Math.max(maxY, other.maxY);
+    }
+
+    @Override
+    public void accept(Object point, float x, float y) {
+        add(x, y);
+    }
+
+    @Override
+    public boolean acceptsSummaries() {
+        return true;
+    }
+
+    @Override
+    public void accept(Summary summary) {
+        add(summary);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSumX() {
+        return sumX;
+    }
+
+    public double getSumY() {
+        return sumY;
+    }
+
+    // NaN if there are no points
+    public float getCentroidX() {
+        return (float) (sumX / count);
+    }
+
+    public float getCentroidY() {
+        return (float) (sumY / count);
+    }
+
+    // The extent is infinitely inverted, min above max, if there are no points
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Count:%d, Centroid:(%f, %f), From:(%f, %f), To:(%f, %f)",
+                count, getCentroidX(), getCentroidY(), minX, minY, maxX, maxY);
+    }
+}
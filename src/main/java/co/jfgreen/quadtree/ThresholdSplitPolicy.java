@@ -0,0 +1,56 @@
+package co.jfgreen.quadtree;
+
+// Splits leaves above one size and merges nodes at or below a smaller one, so that a node whose point count
+// hovers around a single bucket size doesn't split and merge over and over. Merges can also be held back until
+// a node has been small enough for a number of updates, and carried out in a sweep every few updates.
+public class ThresholdSplitPolicy implements SplitPolicy {
+
+    private final int splitThreshold;
+    private final int mergeThreshold;
+    private final int quietUpdates;
+    private final int mergeInterval;
+
+    // Splits above and merges at or below the same size, the behaviour of a plain max bucket size
+    public ThresholdSplitPolicy(int maxBucketSize) {
+        this(maxBucketSize, maxBucketSize, 0, 1);
+    }
+
+    public ThresholdSplitPolicy(int splitThreshold, int mergeThreshold, int quietUpdates, int mergeInterval) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("Split threshold must be a positive integer");
+        }
+        if (mergeThreshold < 0 || mergeThreshold > splitThreshold) {
+            throw new IllegalArgumentException("Merge threshold must be between zero and the split threshold");
+        }
+        if (quietUpdates < 0) {
+            throw new IllegalArgumentException("Quiet updates must not be negative");
+        }
+        if (mergeInterval < 1) {
+            throw new IllegalArgumentException("Merge interval must be a positive integer");
+        }
+        this.splitThreshold = splitThreshold;
+        this.mergeThreshold = mergeThreshold;
+        this.quietUpdates = quietUpdates;
+        this.mergeInterval = mergeInterval;
+    }
+
+    @Override
+    public boolean shouldSplit(int pointCount) {
+        return pointCount > splitThreshold;
+    }
+
+    @Override
+    public boolean canMerge(int pointCount) {
+        return pointCount <= mergeThreshold;
+    }
+
+    @Override
+    public int getQuietUpdates() {
+        return quietUpdates;
+    }
+
+    @Override
+    public int getMergeInterval() {
+        return mergeInterval;
+    }
+}
@@ -37,6 +37,37 @@ public class BoundingBoxTests {
         assertThat(box.getHeight(), is(30F));
     }
 
+    @Test
+    public void distanceSquaredTo_shouldReturnZero_givenPointWithinBounds() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        assertThat(box.distanceSquaredTo(15, 27), is(0F));
+    }
+
+    @Test
+    public void distanceSquaredTo_shouldReturnDistanceToEdge_givenPointBesideBox() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        assertThat(box.distanceSquaredTo(15, 35), is(25F));
+    }
+
+    @Test
+    public void distanceSquaredTo_shouldReturnDistanceToCorner_givenPointDiagonalToBox() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        assertThat(box.distanceSquaredTo(6, 7), is(25F));
+    }
+
+    @Test
+    public void distanceSquaredTo_shouldReturnZero_givenOverlappingBox() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        assertThat(box.distanceSquaredTo(new BoundingBox(25, 0, 40, 15)), is(0F));
+    }
+
+    @Test
+    public void distanceSquaredTo_shouldReturnDistanceBetweenNearestCorners_givenDiagonalBox() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        assertThat(box.distanceSquaredTo(new BoundingBox(33, 34, 40, 40)), is(25F));
+        assertThat(new BoundingBox(33, 34, 40, 40).distanceSquaredTo(box), is(25F));
+    }
+
     @Test
     public void getTopLeftQuad_shouldReturnTopLeftQuad() {
         BoundingBox box = new BoundingBox(10, 10, 20, 20);
@@ -145,4 +176,15 @@ public class BoundingBoxTests {
         BoundingBox box2 = new BoundingBox(30, 30, 40, 40);
         assertFalse(box1.contains(box2));
     }
+
+    @Test
+    public void contains_shouldMarkPointsInside_givenBatchOfPoints() {
+        BoundingBox box = new BoundingBox(10, 10, 30, 30);
+        float[] xs = {10, 30, 31, 20};
+        float[] ys = {30, 10, 20, 9};
+        boolean[] inside = new boolean[4];
+        box.contains(xs, ys, 4, inside);
+        assertArrayEquals(new boolean[] {true, true, false, false}, inside);
+    }
+
 }
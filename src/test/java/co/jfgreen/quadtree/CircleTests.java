@@ -52,4 +52,30 @@ public class CircleTests {
         assertFalse(circle.contains(box));
     }
 
+    @Test
+    public void contains_shouldMarkPointsInside_givenBatchOfPoints() {
+        Circle circle = new Circle(0, 0, 100);
+        float[] xs = {0, 0, 80, 70, 0};
+        float[] ys = {50, 100, 80, 70, 0};
+        boolean[] inside = new boolean[5];
+        circle.contains(xs, ys, 4, inside);
+        assertArrayEquals(new boolean[] {true, true, false, true, false}, inside);
+    }
+
+    @Test
+    public void intersects_shouldReturnTrue_givenBoxTouchingOnlyNearCorner() {
+        Circle circle = new Circle(0, 0, 100);
+        assertTrue(circle.intersects(new BoundingBox(70, 70, 120, 120)));
+        assertFalse(circle.intersects(new BoundingBox(71, 71, 120, 120)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenNegativeRadius() {
+        new Circle(0, 0, -5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void set_shouldThrowException_givenNegativeRadius() {
+        new ReusableCircle().set(0, 0, -5);
+    }
 }
@@ -0,0 +1,232 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ConcurrentQuadTreeTests {
+
+    private final static int BUCKET_SIZE = 4;
+    private final static int MAX_DEPTH = 6;
+    private final static int STRIPE_LEVELS = 2;
+    private ConcurrentQuadTree<NamedPoint> tree;
+
+    @Before
+    public void setupTree() {
+        tree = new ConcurrentQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH, STRIPE_LEVELS);
+    }
+
+    private NamedPoint addPoint(String name, float x, float y) {
+        NamedPoint point = new NamedPoint(name, x, y);
+        tree.add(point);
+        return point;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenStripeLevelsNotLessThanMaxDepth() {
+        new ConcurrentQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 3, 3);
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void addPoint_shouldThrowException_givenPointAlreadyAdded() {
+        NamedPoint point = addPoint("TestPoint", 20, 20);
+        tree.add(point);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addPoint_shouldThrowException_givenPointOutsideTreeBounds() {
+        addPoint("TestPoint", 50, 150);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldReturnPoints_givenAreaSpanningStripes() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 48, 52);
+        NamedPoint point3 = addPoint("3", 52, 48);
+        NamedPoint point4 = addPoint("4", 50, 50);
+        assertThat(tree.queryByPointRadius(50, 50, 5), containsInAnyOrder(point2, point3, point4));
+    }
+
+    @Test
+    public void remove_shouldRemovePoint_givenPointInTree() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        NamedPoint point2 = addPoint("2", 22, 21);
+        assertTrue(tree.remove(point1));
+        assertFalse(tree.contains(point1));
+        assertFalse(tree.remove(point1));
+        assertThat(tree.queryByPointRadius(20, 20, 10), contains(point2));
+    }
+
+    @Test
+    public void update_shouldMovePointsBetweenStripes_givenPointsHaveMoved() {
+        NamedPoint point1 = addPoint("1", 5, 5);
+        NamedPoint point2 = addPoint("2", 95, 5);
+
+        point1.moveTo(90, 90);
+        point2.moveTo(92, 92);
+        tree.update();
+
+        assertTrue(tree.queryByPointRadius(5, 5, 10).isEmpty());
+        assertThat(tree.queryByPointRadius(90, 90, 5), containsInAnyOrder(point1, point2));
+        assertTrue(tree.remove(point1));
+    }
+
+    @Test
+    public void moveTo_shouldMovePointBetweenStripesOnUpdateMoved() {
+        NamedPoint point1 = addPoint("1", 5, 5);
+        point1.moveTo(90, 10);
+        tree.moveTo(point1, 90, 10);
+        tree.updateMoved();
+        assertThat(tree.queryByPointRadius(90, 10, 1), contains(point1));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void moved_shouldThrowException_givenPointNotInTree() {
+        tree.moved(new NamedPoint("TestPoint", 20, 20));
+    }
+
+    @Test
+    public void nearest_shouldReturnKNearestPointsInOrder_givenPointsInManyStripes() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 95, 85);
+        NamedPoint point4 = addPoint("4", 76, 70);
+        NamedPoint point5 = addPoint("5", 88, 45);
+        NamedPoint point6 = addPoint("6", 20, 20);
+        assertThat(tree.nearest(80, 60, 3), contains(point4, point5, point3));
+        assertThat(tree.nearest(30, 30, 2, 20), contains(point6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNegativeMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, -10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNaNMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, Float.NaN);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryPoint_givenQueriesMadeFromInsideConsumer() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        int expected = tree.count(new Circle(50, 50, 30));
+        List<NamedPoint> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, p -> {
+            found.add(p);
+            tree.count(new Circle(p.getX(), p.getY(), 5));
+            tree.queryByPointRadius(10, 90, 20, q -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+
+    @Test
+    public void query_shouldMatchQuadTree_givenManyMovingPoints() {
+        Random random = new Random(42);
+        QuadTree<NamedPoint> quadTree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            NamedPoint point = new NamedPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+            points.add(point);
+            quadTree.add(point);
+            tree.add(point);
+        }
+        for (int tick = 0; tick < 20; tick++) {
+            movePointsRandomly(points, random);
+            quadTree.update();
+            tree.update();
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            assertThat(tree.queryByPointRadius(x, y, 15),
+                    containsInAnyOrder(quadTree.queryByPointRadius(x, y, 15).toArray()));
+            assertThat(tree.nearest(x, y, 5), is(quadTree.nearest(x, y, 5)));
+        }
+    }
+
+    @Test
+    public void query_shouldSeeEveryPoint_givenConcurrentUpdates() throws Exception {
+        Random random = new Random(7);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        AtomicBoolean updating = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(readers.submit(() -> {
+                int minimumSeen = Integer.MAX_VALUE;
+                while (updating.get()) {
+                    minimumSeen = Math.min(minimumSeen, tree.queryByBoundingBox(0, 0, 100, 100).size());
+                }
+                return minimumSeen;
+            }));
+        }
+        for (int tick = 0; tick < 50; tick++) {
+            movePointsRandomly(points, random);
+            tree.update();
+        }
+        updating.set(false);
+        for (Future<Integer> result : results) {
+            assertThat(result.get(), is(points.size()));
+        }
+        readers.shutdown();
+    }
+
+    @Test
+    public void remove_shouldLeaveNoTrace_givenConcurrentUpdates() throws Exception {
+        Random random = new Random(11);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        List<NamedPoint> removed = new ArrayList<>(points.subList(0, 500));
+        List<NamedPoint> kept = new ArrayList<>(points.subList(500, 1000));
+        AtomicBoolean updating = new AtomicBoolean(true);
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        Future<?> remover = workers.submit(() -> {
+            for (NamedPoint point : removed) {
+                assertTrue(tree.remove(point));
+                Thread.yield();
+            }
+        });
+        Future<?> marker = workers.submit(() -> {
+            while (updating.get()) {
+                kept.forEach(tree::moved);
+            }
+        });
+        for (int tick = 0; tick < 30; tick++) {
+            movePointsRandomly(points, random);
+            tree.update();
+        }
+        remover.get();
+        updating.set(false);
+        marker.get();
+        workers.shutdown();
+        tree.update();
+        removed.forEach(point -> assertFalse(tree.contains(point)));
+        assertThat(tree.queryByBoundingBox(0, 0, 100, 100), containsInAnyOrder(kept.toArray()));
+    }
+
+    private void movePointsRandomly(List<NamedPoint> points, Random random) {
+        for (NamedPoint point : points) {
+            float x = Math.max(0, Math.min(100, point.getX() + random.nextFloat() * 10 - 5));
+            float y = Math.max(0, Math.min(100, point.getY() + random.nextFloat() * 10 - 5));
+            point.moveTo(x, y);
+        }
+    }
+
+}
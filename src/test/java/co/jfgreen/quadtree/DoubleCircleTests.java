@@ -0,0 +1,39 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DoubleCircleTests {
+
+    @Test
+    public void contains_shouldReturnTrue_givenPointOnPerimeter() {
+        DoubleCircle circle = new DoubleCircle(0, 0, 100);
+        assertTrue(circle.contains(0, 100));
+        assertFalse(circle.contains(0, 100.000001));
+    }
+
+    @Test
+    public void contains_shouldReturnTrue_givenBoxEncompassed() {
+        DoubleCircle circle = new DoubleCircle(200, 200, 50);
+        assertTrue(circle.contains(170, 170, 230, 230));
+        assertFalse(circle.contains(160, 160, 240, 240));
+    }
+
+    @Test
+    public void intersects_shouldReturnTrue_givenBoxTouchingCircle() {
+        DoubleCircle circle = new DoubleCircle(200, 200, 50);
+        assertTrue(circle.intersects(250, 190, 300, 210));
+        assertFalse(circle.intersects(250.5, 190, 300, 210));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenNegativeRadius() {
+        new DoubleCircle(10, 10, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenNaNRadius() {
+        new DoubleCircle(10, 10, Double.NaN);
+    }
+}
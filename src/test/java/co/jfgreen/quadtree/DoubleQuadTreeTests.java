@@ -0,0 +1,210 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DoubleQuadTreeTests {
+
+    private final static int BUCKET_SIZE = 4;
+    private final static int MAX_DEPTH = 8;
+    private DoubleQuadTree<Place> tree;
+
+    private static class Place implements DoublePoint2D {
+
+        private final String name;
+        private double x;
+        private double y;
+
+        private Place(String name, double x, double y) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public double getX() {
+            return x;
+        }
+
+        @Override
+        public double getY() {
+            return y;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Before
+    public void setupTree() {
+        tree = new DoubleQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+    }
+
+    private Place addPlace(String name, double x, double y) {
+        Place place = new Place(name, x, y);
+        tree.add(place);
+        return place;
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void add_shouldThrowException_givenPointAlreadyAdded() {
+        tree.add(addPlace("1", 20, 20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_shouldThrowException_givenPointOutsideTreeBounds() {
+        addPlace("1", 50, 150);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldTellApartPointsCloserThanFloatPrecision_givenLargeCoordinates() {
+        tree = new DoubleQuadTree<>(0, 0, 40_000_000, 40_000_000, BUCKET_SIZE, DoubleQuadTree.MAX_DEPTH);
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            places.add(addPlace(Integer.toString(i), 39_000_000 + i * 0.5, 12_345_678.25));
+        }
+        assertThat((float) places.get(0).getX(), is((float) places.get(1).getX()));
+        assertThat(tree.queryByPointRadius(39_000_002.5, 12_345_678.25, 0.3), contains(places.get(5)));
+        assertThat(tree.queryByBoundingBox(39_000_001.9, 12_345_678, 1.2, 1), containsInAnyOrder(
+                places.get(4), places.get(5), places.get(6)));
+    }
+
+    @Test
+    public void update_shouldMatchBruteForce_givenPointsMovedAndRemoved() {
+        Random random = new Random(24);
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            places.add(addPlace(Integer.toString(i), random.nextDouble() * 100, random.nextDouble() * 100));
+        }
+        for (int round = 0; round < 10; round++) {
+            for (Place place : places) {
+                place.x = Math.min(100, Math.max(0, place.x + random.nextDouble() * 10 - 5));
+                place.y = Math.min(100, Math.max(0, place.y + random.nextDouble() * 10 - 5));
+            }
+            assertTrue(tree.remove(places.remove(random.nextInt(places.size()))));
+            tree.update();
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double radius = random.nextDouble() * 30;
+            List<Place> expected = new ArrayList<>();
+            for (Place place : places) {
+                double dx = place.x - x;
+                double dy = place.y - y;
+                if (dx*dx + dy*dy <= radius*radius) {
+                    expected.add(place);
+                }
+            }
+            assertThat(tree.queryByPointRadius(x, y, radius), containsInAnyOrder(expected.toArray()));
+        }
+        assertThat(tree.size(), is(490));
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryPoint_givenQueriesMadeFromInsideConsumer() {
+        Random random = new Random(37);
+        for (int i = 0; i < 500; i++) {
+            addPlace(Integer.toString(i), random.nextDouble() * 100, random.nextDouble() * 100);
+        }
+        int expected = tree.queryByPointRadius(50, 50, 30).size();
+        List<Place> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, place -> {
+            found.add(place);
+            tree.queryByBoundingBox(place.x - 5, place.y - 5, 10, 10);
+            tree.queryByPointRadius(10, 90, 20, other -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+
+    @Test
+    public void moveTo_shouldUpdateTreeStraightAway_givenPointStaysInLeaf() {
+        Place place = addPlace("1", 20, 20);
+        tree.queryByPointRadius(20, 20, 1);
+        place.x = 22;
+        place.y = 24;
+        tree.moveTo(place, 22, 24);
+        assertThat(tree.queryByPointRadius(22, 24, 1), contains(place));
+        assertTrue(tree.queryByPointRadius(20, 20, 1).isEmpty());
+    }
+
+    @Test
+    public void moveTo_shouldMovePointOnUpdateMoved_givenPointLeavesLeaf() {
+        for (int i = 0; i < 20; i++) {
+            addPlace(Integer.toString(i), 10 + i, 10 + i);
+        }
+        Place place = addPlace("moving", 20, 20);
+        tree.update();
+        place.x = 90;
+        place.y = 90;
+        tree.moveTo(place, 90, 90);
+        tree.updateMoved();
+        assertThat(tree.queryByPointRadius(90, 90, 1), contains(place));
+    }
+
+    @Test
+    public void nearest_shouldReturnKNearestPointsInOrder() {
+        Place place1 = addPlace("1", 10, 10);
+        Place place2 = addPlace("2", 42, 70);
+        Place place3 = addPlace("3", 95, 85);
+        Place place4 = addPlace("4", 76, 70);
+        Place place5 = addPlace("5", 88, 45);
+        Place place6 = addPlace("6", 20, 20);
+        assertThat(tree.nearest(80, 60, 3), contains(place4, place5, place3));
+        assertThat(tree.nearest(12, 12).get(), is(place1));
+        assertThat(tree.nearest(30, 30, 2, 20), contains(place6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNegativeMaxDistance() {
+        addPlace("1", 50, 50);
+        tree.nearest(50, 50, 3, -10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queryByPointRadius_shouldThrowException_givenNegativeRadius() {
+        addPlace("1", 50, 50);
+        tree.queryByPointRadius(50, 50, -10);
+    }
+
+    @Test
+    public void count_shouldMatchQuery_givenShapes() {
+        Random random = new Random(41);
+        for (int i = 0; i < 500; i++) {
+            addPlace(Integer.toString(i), random.nextDouble() * 100, random.nextDouble() * 100);
+        }
+        DoubleShape circle = new DoubleCircle(40, 60, 25);
+        DoubleShape box = new DoubleBoundingBox(10, 20, 70, 45);
+        List<Place> inCircle = new ArrayList<>();
+        tree.query(circle, inCircle);
+        assertThat(tree.count(circle), is(inCircle.size()));
+        assertThat(tree.count(box), is(tree.queryByBoundingBox(10, 20, 60, 25).size()));
+        assertThat(tree.count(new DoubleBoundingBox(0, 0, 100, 100)), is(500));
+        assertThat(tree.stream(circle).collect(toList()), containsInAnyOrder(inCircle.toArray()));
+    }
+
+    @Test
+    public void nearest_shouldMatchBruteForce_givenManyPoints() {
+        Random random = new Random(43);
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            places.add(addPlace(Integer.toString(i), random.nextDouble() * 100, random.nextDouble() * 100));
+        }
+        for (int i = 0; i < 20; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            List<Place> expected = new ArrayList<>(places);
+            expected.sort(Comparator.comparingDouble(p -> (p.x - x) * (p.x - x) + (p.y - y) * (p.y - y)));
+            assertThat(tree.nearest(x, y, 5), is(expected.subList(0, 5)));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class IntQuadTreeTests {
+
+    private IntQuadTree tree;
+
+    @Before
+    public void setupTree() {
+        tree = new IntQuadTree(0, 0, 100, 100, 4, 4);
+        tree.add(1, 10, 10);
+        tree.add(2, 42, 70);
+        tree.add(3, 95, 85);
+        tree.add(4, 76, 70);
+        tree.add(-5, 88, 45);
+    }
+
+    @Test
+    public void query_shouldReturnIds_givenAreaEncompassingSomePoints() {
+        List<Integer> found = new ArrayList<>();
+        tree.queryByPointRadius(80, 60, 25, found::add);
+        assertThat(found, containsInAnyOrder(4, -5));
+    }
+
+    @Test
+    public void query_shouldWriteIdsToBuffer() {
+        int[] found = new int[5];
+        assertThat(tree.query(new BoundingBox(50, 0, 100, 100), found), is(3));
+        Arrays.sort(found, 0, 3);
+        assertThat(Arrays.copyOf(found, 3), is(new int[]{-5, 3, 4}));
+    }
+
+    @Test
+    public void moveTo_shouldMovePoint() {
+        tree.moveTo(1, 90, 90);
+        assertThat(tree.count(new BoundingBox(0, 0, 50, 50)), is(0));
+        assertThat(tree.getX(1), is(90f));
+        assertTrue(tree.remove(1));
+        assertFalse(tree.contains(1));
+        assertThat(tree.size(), is(4));
+    }
+}
@@ -0,0 +1,267 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LinearQuadTreeTests {
+
+    private final static int BUCKET_SIZE = 4;
+    private final static int MAX_DEPTH = 4;
+    private LinearQuadTree<NamedPoint> tree;
+
+    @Before
+    public void setupTree() {
+        tree = new LinearQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+    }
+
+    private NamedPoint addPoint(String name, float x, float y) {
+        NamedPoint point = new NamedPoint(name, x, y);
+        tree.add(point);
+        return point;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenNegativeBucketSize() {
+        new LinearQuadTree<>(0,0, 100, 100, -5, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenMaxDepthTooLarge() {
+        new LinearQuadTree<>(0,0, 100, 100, 4, 31);
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void addPoint_shouldThrowException_givenPointAlreadyAdded() {
+        NamedPoint point = addPoint("TestPoint", 20, 20);
+        tree.add(point);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addPoint_shouldThrowException_givenPointOutsideTreeBounds() {
+        addPoint("TestPoint", 50, 150);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldReturnPoints_givenAreaEncompassingSomePoints() {
+        NamedPoint point1 = addPoint("TestPoint1", 10, 10);
+        NamedPoint point2 = addPoint("TestPoint2", 42, 70);
+        NamedPoint point3 = addPoint("TestPoint3", 95, 85);
+        NamedPoint point4 = addPoint("TestPoint4", 76, 70);
+        NamedPoint point5 = addPoint("TestPoint5", 88, 45);
+        assertThat(tree.queryByPointRadius(80, 60, 25), containsInAnyOrder(point4, point5));
+    }
+
+    @Test
+    public void queryByBoundingBox_shouldReturnPoints_givenAreaEncompassingSomePoints() {
+        NamedPoint point1 = addPoint("TestPoint1", 10, 10);
+        NamedPoint point2 = addPoint("TestPoint2", 42, 70);
+        NamedPoint point3 = addPoint("TestPoint3", 95, 85);
+        NamedPoint point4 = addPoint("TestPoint4", 76, 70);
+        NamedPoint point5 = addPoint("TestPoint5", 88, 45);
+        assertThat(tree.queryByBoundingBox(75, 60, 25, 30), containsInAnyOrder(point3, point4));
+    }
+
+    @Test
+    public void queryByBoundingBox_shouldReturnPoints_givenPointsOnTreeEdges() {
+        NamedPoint point1 = addPoint("1", 0, 0);
+        NamedPoint point2 = addPoint("2", 100, 100);
+        NamedPoint point3 = addPoint("3", 50, 50);
+        assertThat(tree.queryByBoundingBox(-10, -10, 120, 120), containsInAnyOrder(point1, point2, point3));
+    }
+
+    @Test
+    public void remove_shouldRemovePoint_givenPointInTree() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        NamedPoint point2 = addPoint("2", 22, 21);
+        assertTrue(tree.remove(point1));
+        assertFalse(tree.contains(point1));
+        assertFalse(tree.remove(point1));
+        assertThat(tree.queryByPointRadius(20, 20, 10), contains(point2));
+    }
+
+    @Test
+    public void update_shouldUpdateTree_givenPointsHaveMoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        assertThat(tree.queryByPointRadius(25, 25, 5), contains(point1));
+
+        point1.moveTo(72, 76);
+        point2.moveTo(75, 75);
+        tree.update();
+
+        assertTrue(tree.queryByPointRadius(25, 25, 5).isEmpty());
+        assertThat(tree.queryByPointRadius(75, 75, 5), containsInAnyOrder(point1, point2));
+    }
+
+    @Test
+    public void updateMoved_shouldOnlyUpdatePointsReportedAsMoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+
+        point1.moveTo(72, 76);
+        point2.moveTo(75, 75);
+        tree.moved(point1);
+        tree.updateMoved();
+
+        assertThat(tree.queryByPointRadius(75, 75, 5), contains(point1));
+    }
+
+    @Test
+    public void moveTo_shouldUpdateTreeStraightAway_givenPointStaysInLeaf() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        tree.queryByPointRadius(20, 20, 1);
+        point1.moveTo(22, 24);
+        tree.moveTo(point1, 22, 24);
+        assertThat(tree.queryByPointRadius(22, 24, 1), contains(point1));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void moved_shouldThrowException_givenPointNotInTree() {
+        tree.moved(new NamedPoint("TestPoint", 20, 20));
+    }
+
+    @Test
+    public void nearest_shouldReturnKNearestPointsInOrder() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 95, 85);
+        NamedPoint point4 = addPoint("4", 76, 70);
+        NamedPoint point5 = addPoint("5", 88, 45);
+        NamedPoint point6 = addPoint("6", 20, 20);
+        assertThat(tree.nearest(80, 60, 3), contains(point4, point5, point3));
+    }
+
+    @Test
+    public void nearest_shouldReturnOnlyPointsWithinMaxDistance() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 12, 14);
+        assertThat(tree.nearest(10, 12, 3, 5), containsInAnyOrder(point1, point3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNegativeMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, -10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNaNMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, Float.NaN);
+    }
+
+    @Test
+    public void query_shouldMatchQuadTree_givenManyMovingPoints() {
+        Random random = new Random(42);
+        QuadTree<NamedPoint> quadTree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        tree = new LinearQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            NamedPoint point = new NamedPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+            points.add(point);
+            quadTree.add(point);
+            tree.add(point);
+        }
+        for (int tick = 0; tick < 20; tick++) {
+            for (NamedPoint point : points) {
+                float x = Math.max(0, Math.min(100, point.getX() + random.nextFloat() * 6 - 3));
+                float y = Math.max(0, Math.min(100, point.getY() + random.nextFloat() * 6 - 3));
+                point.moveTo(x, y);
+            }
+            quadTree.update();
+            tree.update();
+            tree.remove(points.get(tick));
+            quadTree.remove(points.get(tick));
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            assertThat(tree.queryByPointRadius(x, y, 15),
+                    containsInAnyOrder(quadTree.queryByPointRadius(x, y, 15).toArray()));
+            assertThat(tree.nearest(x, y, 5), is(quadTree.nearest(x, y, 5)));
+            assertThat(tree.count(new Circle(x, y, 40)), is(quadTree.count(new Circle(x, y, 40))));
+        }
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryPoint_givenQueriesMadeFromInsideConsumer() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        int expected = tree.count(new Circle(50, 50, 30));
+        List<NamedPoint> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, p -> {
+            found.add(p);
+            tree.count(new Circle(p.getX(), p.getY(), 5));
+            tree.queryByPointRadius(10, 90, 20, q -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+
+    @Test
+    public void query_shouldMatchQuadTree_givenTreeDeeperThanSixteenLevels() {
+        Random random = new Random(17);
+        QuadTree<NamedPoint> quadTree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 20);
+        tree = new LinearQuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 20);
+        for (int i = 0; i < 500; i++) {
+            NamedPoint point = new NamedPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+            quadTree.add(point);
+            tree.add(point);
+        }
+        for (int i = 0; i < 20; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            assertThat(tree.queryByPointRadius(x, y, 15),
+                    containsInAnyOrder(quadTree.queryByPointRadius(x, y, 15).toArray()));
+            assertThat(tree.nearest(x, y, 5), is(quadTree.nearest(x, y, 5)));
+        }
+    }
+
+    @Test
+    public void query_shouldMatchQuadTree_givenFirstQueriesAfterChangesFromManyThreads() throws Exception {
+        Random random = new Random(6);
+        QuadTree<NamedPoint> quadTree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+        for (int i = 0; i < 2000; i++) {
+            NamedPoint point = new NamedPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+            quadTree.add(point);
+            tree.add(point);
+        }
+        List<Circle> areas = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Circle area = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 30);
+            areas.add(area);
+            expected.add(quadTree.count(area));
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                results.add(readers.submit(() -> {
+                    List<Integer> counts = new ArrayList<>();
+                    for (Circle area : areas) {
+                        List<NamedPoint> found = new ArrayList<>();
+                        tree.query(area, found::add);
+                        counts.add(found.size());
+                    }
+                    return counts;
+                }));
+            }
+            for (Future<List<Integer>> result : results) {
+                assertThat(result.get(), is(expected));
+            }
+        } finally {
+            readers.shutdown();
+        }
+    }
+}
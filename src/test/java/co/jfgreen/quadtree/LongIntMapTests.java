@@ -0,0 +1,34 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongIntMapTests {
+
+    @Test
+    public void map_shouldBehaveLikeHashMap_givenRandomPutsAndRemoves() {
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(24);
+        for (int i = 0; i < 100000; i++) {
+            // Few enough keys that removals run into long probe runs
+            long key = random.nextInt(500) * 0x100000000L;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key), is(expected.getOrDefault(key, LongIntMap.NO_VALUE)));
+                expected.remove(key);
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                assertThat(map.put(key, value), is(expected.getOrDefault(key, LongIntMap.NO_VALUE)));
+                expected.put(key, value);
+            }
+            assertThat(map.size(), is(expected.size()));
+        }
+        expected.forEach((key, value) -> assertThat(map.get(key), is(value)));
+    }
+}
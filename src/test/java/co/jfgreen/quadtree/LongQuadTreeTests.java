@@ -0,0 +1,147 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LongQuadTreeTests {
+
+    private final static int BUCKET_SIZE = 4;
+    private final static int MAX_DEPTH = 6;
+    private LongQuadTree tree;
+
+    @Before
+    public void setupTree() {
+        tree = new LongQuadTree(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+    }
+
+    private List<Long> query(Shape area) {
+        List<Long> found = new ArrayList<>();
+        tree.query(area, found::add);
+        return found;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenMaxDepthTooLarge() {
+        new LongQuadTree(0, 0, 100, 100, 4, LongQuadTree.MAX_DEPTH + 1);
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void add_shouldThrowException_givenIdAlreadyAdded() {
+        tree.add(7, 20, 20);
+        tree.add(7, 30, 30);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_shouldThrowException_givenPointOutsideTreeBounds() {
+        tree.add(7, 50, 150);
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void moveTo_shouldThrowException_givenIdNotInTree() {
+        tree.moveTo(7, 50, 50);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldReturnIds_givenAreaEncompassingSomePoints() {
+        tree.add(1L << 40, 10, 10);
+        tree.add(2, 42, 70);
+        tree.add(3, 95, 85);
+        tree.add(4, 76, 70);
+        tree.add(5, 88, 45);
+        List<Long> found = new ArrayList<>();
+        tree.queryByPointRadius(80, 60, 25, found::add);
+        assertThat(found, containsInAnyOrder(4L, 5L));
+    }
+
+    @Test
+    public void query_shouldFillBuffer_andReturnTotalFound() {
+        for (int i = 0; i < 10; i++) {
+            tree.add(i, 10 + i, 10 + i);
+        }
+        long[] found = new long[4];
+        assertThat(tree.query(new BoundingBox(0, 0, 50, 50), found), is(10));
+        assertThat(found.length, is(4));
+    }
+
+    @Test
+    public void query_shouldMatchBruteForce_givenPointsAddedMovedAndRemoved() {
+        Random random = new Random(23);
+        Map<Long, float[]> positions = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                long id = random.nextInt(1000);
+                float x = random.nextFloat() * 100;
+                float y = random.nextFloat() * 100;
+                if (positions.containsKey(id)) {
+                    if (random.nextBoolean()) {
+                        assertTrue(tree.remove(id));
+                        positions.remove(id);
+                    } else {
+                        tree.moveTo(id, x, y);
+                        positions.put(id, new float[]{x, y});
+                    }
+                } else {
+                    tree.add(id, x, y);
+                    positions.put(id, new float[]{x, y});
+                }
+            }
+            Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 40);
+            List<Long> expected = new ArrayList<>();
+            positions.forEach((id, p) -> {
+                if (circle.contains(p[0], p[1])) {
+                    expected.add(id);
+                }
+            });
+            assertThat(query(circle), containsInAnyOrder(expected.toArray()));
+            assertThat(tree.count(circle), is(expected.size()));
+            assertThat(tree.size(), is(positions.size()));
+        }
+    }
+
+    @Test
+    public void query_shouldMatchBruteForce_givenTreeDeeperThanSixteenLevels() {
+        tree = new LongQuadTree(0, 0, 100, 100, BUCKET_SIZE, LongQuadTree.MAX_DEPTH);
+        Random random = new Random(29);
+        float[][] positions = new float[500][];
+        for (int id = 0; id < positions.length; id++) {
+            positions[id] = new float[]{random.nextFloat() * 100, random.nextFloat() * 100};
+            tree.add(id, positions[id][0], positions[id][1]);
+        }
+        for (int i = 0; i < 20; i++) {
+            Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 40);
+            List<Long> expected = new ArrayList<>();
+            for (int id = 0; id < positions.length; id++) {
+                if (circle.contains(positions[id][0], positions[id][1])) {
+                    expected.add((long) id);
+                }
+            }
+            assertThat(query(circle), containsInAnyOrder(expected.toArray()));
+            assertThat(tree.count(circle), is(expected.size()));
+        }
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryId_givenQueriesMadeFromInsideConsumer() {
+        Random random = new Random(31);
+        for (int id = 0; id < 500; id++) {
+            tree.add(id, random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        int expected = tree.count(new Circle(50, 50, 30));
+        List<Long> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, id -> {
+            found.add(id);
+            tree.count(new Circle(tree.getX(id), tree.getY(id), 5));
+            tree.queryByPointRadius(10, 90, 20, other -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+}
@@ -0,0 +1,194 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LooseQuadTreeTests {
+
+    private final static int MAX_DEPTH = 6;
+    private LooseQuadTree<Body> tree;
+
+    private static class Body implements Extent2D {
+
+        private final String name;
+        private float x;
+        private float y;
+        private float halfWidth;
+        private float halfHeight;
+
+        private Body(String name, float x, float y, float halfWidth, float halfHeight) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.halfWidth = halfWidth;
+            this.halfHeight = halfHeight;
+        }
+
+        @Override
+        public float getX() {
+            return x;
+        }
+
+        @Override
+        public float getY() {
+            return y;
+        }
+
+        @Override
+        public float getHalfWidth() {
+            return halfWidth;
+        }
+
+        @Override
+        public float getHalfHeight() {
+            return halfHeight;
+        }
+
+        private boolean overlaps(Shape area) {
+            return area.intersects(x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Before
+    public void setupTree() {
+        tree = new LooseQuadTree<>(0, 0, 100, 100, MAX_DEPTH, LooseQuadTree.DEFAULT_LOOSENESS);
+    }
+
+    private Body addBody(String name, float x, float y, float halfWidth, float halfHeight) {
+        Body body = new Body(name, x, y, halfWidth, halfHeight);
+        tree.add(body);
+        return body;
+    }
+
+    private List<Body> addRandomBodies(Random random, int count) {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Mostly small bodies, with the odd large one
+            float scale = random.nextInt(10) == 0 ? 30 : 2;
+            bodies.add(addBody(Integer.toString(i), random.nextFloat() * 100, random.nextFloat() * 100,
+                    random.nextFloat() * scale, random.nextFloat() * scale));
+        }
+        return bodies;
+    }
+
+    private static void assertQueryMatchesBruteForce(LooseQuadTree<Body> tree, List<Body> bodies, Shape area) {
+        List<Body> expected = new ArrayList<>();
+        for (Body body : bodies) {
+            if (body.overlaps(area)) {
+                expected.add(body);
+            }
+        }
+        List<Body> found = new ArrayList<>();
+        tree.query(area, found::add);
+        assertThat(found, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void add_shouldThrowException_givenItemAlreadyAdded() {
+        tree.add(addBody("1", 20, 20, 1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_shouldThrowException_givenCentreOutsideTreeBounds() {
+        addBody("1", 50, 150, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldThrowException_givenLoosenessNotAboveOne() {
+        new LooseQuadTree<Body>(0, 0, 100, 100, MAX_DEPTH, 1);
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindLargeItem_givenQueryFarFromItsCentre() {
+        Body wall = addBody("wall", 50, 10, 45, 1);
+        addBody("pebble", 20, 80, 0.5f, 0.5f);
+        assertThat(tree.queryByPointRadius(93, 12, 2), contains(wall));
+        assertThat(tree.queryByPointRadius(93, 20, 2), is(empty()));
+    }
+
+    @Test
+    public void queryByBoundingBox_shouldFindItemsReachingOutOfTreeBounds() {
+        Body overhang = addBody("overhang", 98, 50, 10, 10);
+        assertThat(tree.queryByBoundingBox(104, 45, 5, 5), contains(overhang));
+    }
+
+    @Test
+    public void query_shouldMatchBruteForce_givenRandomItemsAndAreas() {
+        Random random = new Random(42);
+        List<Body> bodies = addRandomBodies(random, 500);
+        for (int i = 0; i < 200; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            float size = random.nextFloat() * 40;
+            assertQueryMatchesBruteForce(tree, bodies, new Circle(x, y, size / 2));
+            assertQueryMatchesBruteForce(tree, bodies, new BoundingBox(x - size, y - size, x + size, y + size));
+        }
+    }
+
+    @Test
+    public void query_shouldMatchBruteForce_givenItemsMovedAndResized() {
+        Random random = new Random(7);
+        List<Body> bodies = addRandomBodies(random, 300);
+        for (int round = 0; round < 5; round++) {
+            for (Body body : bodies) {
+                body.x = Math.max(0, Math.min(100, body.x + random.nextFloat() * 10 - 5));
+                body.y = Math.max(0, Math.min(100, body.y + random.nextFloat() * 10 - 5));
+                if (random.nextInt(5) == 0) {
+                    body.halfWidth = random.nextFloat() * 20;
+                }
+                tree.moved(body);
+            }
+            tree.updateMoved();
+            for (int i = 0; i < 50; i++) {
+                Circle area = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 20);
+                assertQueryMatchesBruteForce(tree, bodies, area);
+            }
+        }
+    }
+
+    @Test
+    public void update_shouldRehomeItem_givenItemGrown() {
+        Body body = addBody("1", 10, 10, 0.5f, 0.5f);
+        body.halfWidth = 60;
+        tree.update();
+        assertThat(tree.queryByPointRadius(65, 10, 1), contains(body));
+    }
+
+    @Test
+    public void remove_shouldStopItemBeingFound() {
+        Random random = new Random(3);
+        List<Body> bodies = addRandomBodies(random, 100);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(tree.remove(bodies.remove(bodies.size() - 1)));
+        }
+        assertThat(tree.size(), is(50));
+        assertFalse(tree.remove(new Body("stranger", 5, 5, 1, 1)));
+        assertQueryMatchesBruteForce(tree, bodies, new BoundingBox(-50, -50, 150, 150));
+        assertQueryMatchesBruteForce(tree, bodies, new Circle(50, 50, 20));
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryBody_givenQueriesMadeFromInsideConsumer() {
+        addRandomBodies(new Random(47), 500);
+        int expected = tree.queryByPointRadius(50, 50, 30).size();
+        List<Body> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, body -> {
+            found.add(body);
+            tree.queryByPointRadius(body.x, body.y, 5, other -> {});
+            tree.query(new BoundingBox(5, 75, 25, 95), other -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+}
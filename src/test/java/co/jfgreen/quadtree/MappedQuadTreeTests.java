@@ -0,0 +1,183 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MappedQuadTreeTests {
+
+    private final static int BUCKET_SIZE = 4;
+    private final static int MAX_DEPTH = 6;
+    private final static int POINT_COUNT = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long[] ids;
+    private float[] xs;
+    private float[] ys;
+    private MappedQuadTree tree;
+
+    @Before
+    public void setupTree() {
+        Random random = new Random(21);
+        ids = new long[POINT_COUNT];
+        xs = new float[POINT_COUNT];
+        ys = new float[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            ids[i] = 1_000_000_000_000L + i;
+            xs[i] = random.nextFloat() * 100;
+            ys[i] = random.nextFloat() * 100;
+        }
+        tree = MappedQuadTree.build(ids, xs, ys, POINT_COUNT, 0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+    }
+
+    private List<Long> query(MappedQuadTree tree, Shape area) {
+        List<Long> found = new ArrayList<>();
+        tree.query(area, found::add);
+        return found;
+    }
+
+    private List<Long> expected(Shape area) {
+        List<Long> inside = new ArrayList<>();
+        for (int i = 0; i < POINT_COUNT; i++) {
+            if (area.contains(xs[i], ys[i])) {
+                inside.add(ids[i]);
+            }
+        }
+        return inside;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_shouldThrowException_givenMaxDepthTooLarge() {
+        MappedQuadTree.build(ids, xs, ys, POINT_COUNT, 0, 0, 100, 100, BUCKET_SIZE, MappedQuadTree.MAX_DEPTH + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_shouldThrowException_givenPointOutsideTreeBounds() {
+        MappedQuadTree.build(new long[]{1}, new float[]{50}, new float[]{150}, 1, 0, 0, 100, 100, BUCKET_SIZE, 4);
+    }
+
+    @Test
+    public void query_shouldFindSameIdsAsBruteForce() {
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 30);
+            List<Long> expected = expected(circle);
+            assertThat(query(tree, circle), containsInAnyOrder(expected.toArray()));
+            assertThat(tree.count(circle), is(expected.size()));
+        }
+        assertThat(tree.count(new BoundingBox(0, 0, 100, 100)), is(POINT_COUNT));
+    }
+
+    @Test
+    public void map_shouldReloadTreeWrittenToFile() throws IOException {
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedQuadTree mapped = MappedQuadTree.map(channel);
+            assertThat(mapped.size(), is(POINT_COUNT));
+            BoundingBox area = new BoundingBox(20, 30, 45, 70);
+            assertThat(query(mapped, area), containsInAnyOrder(expected(area).toArray()));
+        }
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void wrap_shouldThrowException_givenBufferWithoutTree() {
+        MappedQuadTree.wrap(ByteBuffer.allocate(64));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void map_shouldThrowException_givenCorruptMaxDepth() throws IOException {
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel);
+            ByteBuffer depth = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            depth.putInt(-5).flip();
+            channel.write(depth, 8);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedQuadTree.map(channel);
+        }
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void query_shouldThrowException_givenNodeWithChildrenBeforeIt() throws IOException {
+        query(withRootField(0, 0), new BoundingBox(0, 0, 50, 50));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void count_shouldThrowException_givenNodeEndingPastLastSlot() throws IOException {
+        withRootField(8, POINT_COUNT + 1).count(new BoundingBox(0, 0, 50, 50));
+    }
+
+    // Maps a copy of the tree with one field of the root node, which follows the header and points, overwritten
+    private MappedQuadTree withRootField(int field, int value) throws IOException {
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel);
+            ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.putInt(value).flip();
+            channel.write(bytes, 40 + 16L * POINT_COUNT + field);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return MappedQuadTree.map(channel);
+        }
+    }
+
+    @Test
+    public void writeTo_shouldWriteOnlyTree_givenTreeMappedFromLongerFile() throws IOException {
+        File file = folder.newFile();
+        long treeBytes;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel);
+            treeBytes = channel.size();
+            channel.write(ByteBuffer.wrap(new byte[100]));
+        }
+        File copy = folder.newFile();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(copy.toPath(), StandardOpenOption.WRITE)) {
+            MappedQuadTree.map(in).writeTo(out);
+            assertThat(out.size(), is(treeBytes));
+        }
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryId_givenQueriesMadeFromInsideConsumer() {
+        List<Long> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 20, id -> {
+            found.add(id);
+            tree.count(new Circle(10, 10, 5));
+            tree.queryByPointRadius(90, 90, 10, other -> {});
+        });
+        assertThat(found, containsInAnyOrder(expected(new Circle(50, 50, 20)).toArray()));
+    }
+
+    @Test
+    public void query_shouldFindSameIdsAsBruteForce_givenTreeDeeperThanSixteenLevels() {
+        tree = MappedQuadTree.build(ids, xs, ys, POINT_COUNT, 0, 0, 100, 100, BUCKET_SIZE, MappedQuadTree.MAX_DEPTH);
+        Random random = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 30);
+            List<Long> expected = expected(circle);
+            assertThat(query(tree, circle), containsInAnyOrder(expected.toArray()));
+            assertThat(tree.count(circle), is(expected.size()));
+        }
+    }
+}
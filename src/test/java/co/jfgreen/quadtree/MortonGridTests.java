@@ -0,0 +1,49 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MortonGridTests {
+
+    @Test
+    public void column_shouldPutPointsBetweenTheirGridLines_givenFloatGrid() {
+        MortonGrid grid = MortonGrid.of(new BoundingBox(-3.3f, 7.1f, 96.4f, 101.9f), 10);
+        Random random = new Random(13);
+        for (int i = 0; i < 10_000; i++) {
+            float x = -3.3f + random.nextFloat() * 99.7f;
+            float y = 7.1f + random.nextFloat() * 94.8f;
+            int column = grid.column(x);
+            int row = grid.row(y);
+            assertThat((float) grid.columnLine(column), lessThanOrEqualTo(x));
+            assertThat((float) grid.columnLine(column + 1), greaterThanOrEqualTo(x));
+            assertThat((float) grid.rowLine(row), lessThanOrEqualTo(y));
+            assertThat((float) grid.rowLine(row + 1), greaterThanOrEqualTo(y));
+        }
+    }
+
+    @Test
+    public void columnLine_shouldBeFloat_givenFloatGrid() {
+        MortonGrid grid = MortonGrid.of(new BoundingBox(0, 0, 1, 1), 4);
+        assertThat(grid.columnLine(3), is((double) (float) (3 / 16.0)));
+        assertThat(grid.columnLine(16), is(1.0));
+        assertThat(grid.rowLine(0), is(0.0));
+    }
+
+    @Test
+    public void column_shouldTellApartPointsCloserThanFloatPrecision_givenDoubleGrid() {
+        MortonGrid grid = MortonGrid.of(0, 0, 40_000_000, 40_000_000, Morton.MAX_DEPTH);
+        assertThat(grid.column(39_000_000), lessThan(grid.column(39_000_000.5)));
+        assertThat(grid.columnLine(grid.column(39_000_000.5)), lessThanOrEqualTo(39_000_000.5));
+    }
+
+    @Test
+    public void codeOf_shouldEncodeColumnAndRow() {
+        MortonGrid grid = MortonGrid.of(new BoundingBox(0, 0, 100, 100), 2);
+        assertThat(grid.codeOf(60, 10), is(Morton.encode(2, 0)));
+        assertThat(grid.codeOf(100, 100), is(Morton.encode(3, 3)));
+    }
+}
@@ -0,0 +1,63 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MortonTests {
+
+    @Test
+    public void encode_shouldInterleaveColumnAndRowBits() {
+        assertThat(Morton.encode(0b11, 0b00), is(0b0101L));
+        assertThat(Morton.encode(0b00, 0b11), is(0b1010L));
+        assertThat(Morton.encode(0b10, 0b01), is(0b0110L));
+    }
+
+    @Test
+    public void columnAndRow_shouldReverseEncode() {
+        long code = Morton.encode(123456789, 987654321);
+        assertThat(Morton.column(code), is(123456789));
+        assertThat(Morton.row(code), is(987654321));
+    }
+
+    @Test
+    public void quadrant_shouldReturnQuadrantAtEachLevel() {
+        // Column 0b10, row 0b01 in a tree of depth 2
+        long code = Morton.encode(0b10, 0b01);
+        assertThat(Morton.quadrant(code, 0, 2), is(0b01));
+        assertThat(Morton.quadrant(code, 1, 2), is(0b10));
+    }
+
+    @Test
+    public void sortOrder_shouldGiveSlotsInCodeOrder_givenShallowAndDeepTrees() {
+        long[] codes = {9, 3, 7, 3, 0, 12, 5};
+        int[] expected = {4, 1, 3, 6, 2, 0, 5};
+        assertThat(Morton.sortOrder(codes, codes.length, 8), is(expected));
+        assertThat(Morton.sortOrder(codes, codes.length, Morton.MAX_DEPTH), is(expected));
+    }
+
+    @Test
+    public void sortOrder_shouldMatchPackedSort_givenManyCodes() {
+        Random random = new Random(5);
+        long[] codes = new long[1000];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = random.nextInt(200);
+        }
+        assertThat(Morton.sortOrder(codes, codes.length, Morton.MAX_DEPTH),
+                is(Morton.sortOrder(codes, codes.length, 8)));
+    }
+
+    @Test
+    public void insertionSort_shouldSortCodes_givenSwapperMovingThem() {
+        long[] codes = {4, 1, 3, 1, 2};
+        Morton.insertionSort(codes, codes.length, (a, b) -> {
+            long code = codes[a];
+            codes[a] = codes[b];
+            codes[b] = code;
+        });
+        assertThat(codes, is(new long[]{1, 1, 2, 3, 4}));
+    }
+}
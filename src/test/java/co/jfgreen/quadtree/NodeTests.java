@@ -1,7 +1,15 @@
 package co.jfgreen.quadtree;
 
 import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 
 public class NodeTests {
 
@@ -19,6 +27,78 @@ public class NodeTests {
         assertTrue(nodeState.isEmpty());
     }
 
+    @Test
+    public void removePoint_shouldRemoveOnlyThatPoint() {
+        Node<NamedPoint> node = new Node<>(BOX, BUCKET_SIZE, DEPTH);
+        NamedPoint point1 = new NamedPoint("1", 10, 10);
+        NamedPoint point2 = new NamedPoint("2", 20, 20);
+        NamedPoint point3 = new NamedPoint("3", 30, 30);
+        node.addPoint(point1);
+        node.addPoint(point2);
+        node.addPoint(point3);
+
+        node.removePoint(point1);
+
+        assertThat(node.getState().getItems(), containsInAnyOrder(point2, point3));
+    }
+
+    @Test
+    public void updatePositions_shouldCollectPointsOutsideNode() {
+        Node<NamedPoint> node = new Node<>(BOX, BUCKET_SIZE, DEPTH);
+        NamedPoint point1 = new NamedPoint("1", 10, 10);
+        NamedPoint point2 = new NamedPoint("2", 20, 20);
+        node.addPoint(point1);
+        node.addPoint(point2);
+        point1.moveTo(150, 10);
+        point2.moveTo(25, 25);
+
+        List<NamedPoint> pointsOutside = new ArrayList<>();
+        node.updatePositions(pointsOutside);
+
+        assertThat(pointsOutside, contains(point1));
+    }
+
+    @Test
+    public void queryByShape_shouldReturnOnlyPointsInArea_givenLeafInsideAreaButRootNot() {
+        Node<NamedPoint> node = new Node<>(BOX, BUCKET_SIZE, DEPTH);
+        NamedPoint point1 = new NamedPoint("1", 10, 10);
+        NamedPoint point2 = new NamedPoint("2", 20, 20);
+        NamedPoint point3 = new NamedPoint("3", 90, 90);
+        NamedPoint point4 = new NamedPoint("4", 95, 60);
+        for (NamedPoint point : new NamedPoint[] {point1, point2, point3, point4}) {
+            node.addPoint(point);
+        }
+        node.refine();
+
+        assertThat(node.queryByShape(new BoundingBox(-1, -1, 60, 60)), containsInAnyOrder(point1, point2));
+        assertThat(node.queryByShape(new BoundingBox(40, 40, 101, 101)), containsInAnyOrder(point3, point4));
+    }
+
+    @Test
+    public void getPointCount_shouldCountPointsInSubtree_givenRefinedAndCoarsened() {
+        Node<NamedPoint> node = new Node<>(BOX, BUCKET_SIZE, DEPTH);
+        NamedPoint point1 = new NamedPoint("1", 10, 10);
+        NamedPoint point2 = new NamedPoint("2", 20, 20);
+        NamedPoint point3 = new NamedPoint("3", 90, 90);
+        NamedPoint point4 = new NamedPoint("4", 95, 60);
+        for (NamedPoint point : new NamedPoint[] {point1, point2, point3, point4}) {
+            node.addPoint(point);
+        }
+        node.refine();
+        Node<NamedPoint> leaf = node.findLeafEnclosing(point1).get();
+        assertThat(node.getPointCount(), is(4));
+        assertThat(leaf.getPointCount(), is(2));
+
+        point1.moveTo(92, 92);
+        leaf.transferPoint(point1, node.findLeafEnclosing(point3).get());
+        assertThat(node.getPointCount(), is(4));
+        assertThat(leaf.getPointCount(), is(1));
+
+        node.findLeafEnclosing(point3).get().removePoint(point3);
+        node.coarsen();
+        assertThat(node.getPointCount(), is(3));
+    }
+
     //TODO: Test more cases here.
 
 }
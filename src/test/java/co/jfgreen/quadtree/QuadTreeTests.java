@@ -1,9 +1,33 @@
 package co.jfgreen.quadtree;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import static co.jfgreen.quadtree.TreeStateUtil.*;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
@@ -14,6 +38,9 @@ public class QuadTreeTests {
     private final static int MAX_DEPTH = 4;
     private QuadTree<NamedPoint> tree;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setupTree() {
         tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
@@ -68,6 +95,173 @@ public class QuadTreeTests {
         addPoint("TestPoint", 50, 150);
     }
 
+    @Test
+    public void addPoint_shouldNotThrowException_givenEqualButDistinctPoints() {
+        addPoint("TestPoint", 20, 20);
+        addPoint("TestPoint", 30, 30);
+    }
+
+    @Test
+    public void addPoint_shouldNotThrowException_givenPointPreviouslyRemoved() {
+        NamedPoint point = addPoint("TestPoint", 20, 20);
+        tree.remove(point);
+        tree.add(point);
+        assertTrue(tree.contains(point));
+    }
+
+    @Test
+    public void contains_shouldReturnTrue_givenPointAdded() {
+        NamedPoint point = addPoint("TestPoint", 20, 20);
+        assertTrue(tree.contains(point));
+    }
+
+    @Test
+    public void contains_shouldReturnFalse_givenPointNotAdded() {
+        addPoint("TestPoint", 20, 20);
+        assertFalse(tree.contains(new NamedPoint("TestPoint", 20, 20)));
+    }
+
+    @Test
+    public void remove_shouldReturnFalse_givenPointNotInTree() {
+        assertFalse(tree.remove(new NamedPoint("TestPoint", 20, 20)));
+    }
+
+    @Test
+    public void remove_shouldRemovePoint_givenPointInTree() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        NamedPoint point2 = addPoint("2", 22, 21);
+        assertTrue(tree.remove(point1));
+        assertFalse(tree.contains(point1));
+        assertThat(tree.queryByPointRadius(20, 20, 10), contains(point2));
+    }
+
+    @Test
+    public void remove_shouldCoarsenTree_givenRefinedNodeDropsBelowBucketSize() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        NamedPoint point5 = addPoint("5", 10, 10);
+        assertConnector(tree.getState());
+
+        tree.remove(point5);
+
+        assertLeaf(tree.getState(), point1, point2, point3, point4);
+    }
+
+    @Test
+    public void remove_shouldRemovePoint_givenPointMovedByUpdate() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        NamedPoint point5 = addPoint("5", 10, 10);
+        point1.moveTo(80, 80);
+        tree.update();
+
+        assertTrue(tree.remove(point1));
+
+        assertThat(tree.queryByBoundingBox(0, 0, 100, 100), containsInAnyOrder(point2, point3, point4, point5));
+    }
+
+    @Test
+    public void build_shouldBuildSameTreeAsAddingPoints() {
+        NamedPoint point1 = new NamedPoint("1", 10, 10);
+        NamedPoint point2 = new NamedPoint("2", 88, 45);
+        NamedPoint point3 = new NamedPoint("3", 36, 63);
+        NamedPoint point4 = new NamedPoint("4", 42, 70);
+        NamedPoint point5 = new NamedPoint("5", 12, 89);
+        NamedPoint point6 = new NamedPoint("6", 21, 80);
+        NamedPoint point7 = new NamedPoint("7", 30, 96);
+        NamedPoint point8 = new NamedPoint("8", 76, 70);
+        NamedPoint point9 = new NamedPoint("9", 95, 85);
+
+        tree = QuadTree.build(Arrays.asList(point1, point2, point3, point4, point5, point6, point7, point8, point9),
+                0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+
+        ImmutableNode<NamedPoint> root = tree.getState();
+        ImmutableNode<NamedPoint> bl = getNode(root.getBottomLeft());
+        assertConnector(root);
+        assertConnector(bl);
+        assertLeaf(getNode(root.getTopLeft()), point1);
+        assertLeaf(getNode(root.getTopRight()), point2);
+        assertLeaf(getNode(bl.getTopRight()), point3, point4);
+        assertLeaf(getNode(bl.getBottomLeft()), point5, point6);
+        assertLeaf(getNode(bl.getBottomRight()), point7);
+        assertLeaf(getNode(root.getBottomRight()), point8, point9);
+    }
+
+    @Test
+    public void build_shouldBuildTreeThatCanBeUpdated() {
+        NamedPoint point1 = new NamedPoint("1", 25, 25);
+        NamedPoint point2 = new NamedPoint("2", 75, 25);
+        NamedPoint point3 = new NamedPoint("3", 75, 75);
+        NamedPoint point4 = new NamedPoint("4", 25, 75);
+        NamedPoint point5 = new NamedPoint("5", 10, 10);
+        tree = QuadTree.build(Arrays.asList(point1, point2, point3, point4, point5),
+                0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH);
+
+        point1.moveTo(80, 80);
+        tree.update();
+
+        assertTrue(tree.remove(point2));
+        assertThat(tree.queryByBoundingBox(50, 50, 50, 50), containsInAnyOrder(point1, point3));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void build_shouldThrowException_givenPointTwice() {
+        NamedPoint point = new NamedPoint("1", 25, 25);
+        QuadTree.build(Arrays.asList(point, point), 0, 0, 100, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_shouldThrowException_givenPointOutsideTreeBounds() {
+        QuadTree.build(Arrays.asList(new NamedPoint("1", 25, 125)), 0, 0, 100, 100);
+    }
+
+    @Test
+    public void addAll_shouldAddPoints_givenTreeEmptiedByRemoval() {
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            points.add(new NamedPoint(String.valueOf(i), i * 2, 100 - i * 2));
+        }
+        tree.addAll(points);
+        points.forEach(tree::remove);
+
+        tree.addAll(points);
+
+        assertThat(tree.queryByBoundingBox(0, 0, 100, 100), containsInAnyOrder(points.toArray()));
+    }
+
+    @Test
+    public void addAll_shouldAddPoints_givenTreeEmptiedWithMergesHeldBack() {
+        tree = new QuadTree<>(0, 0, 100, 100, new ThresholdSplitPolicy(4, 4, 3, 1), MAX_DEPTH);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            points.add(new NamedPoint(String.valueOf(i), i * 2, 100 - i * 2));
+        }
+        tree.addAll(points);
+        points.forEach(tree::remove);
+
+        tree.addAll(points);
+
+        points.forEach(point -> assertTrue(tree.contains(point)));
+        assertThat(tree.queryByBoundingBox(0, 0, 100, 100), containsInAnyOrder(points.toArray()));
+    }
+
+    @Test
+    public void addAll_shouldLeaveTreeEmpty_givenPointOutsideTreeBounds() {
+        NamedPoint inside = new NamedPoint("1", 25, 25);
+        try {
+            tree.addAll(Arrays.asList(inside, new NamedPoint("2", 25, 125)));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertFalse(tree.contains(inside));
+        tree.addAll(Arrays.asList(inside));
+        assertThat(tree.queryByBoundingBox(0, 0, 100, 100), contains(inside));
+    }
+
     @Test
     public void queryByPointRadius_shouldReturnNothing_givenAreaEncompassingNoPoint() {
         NamedPoint point = addPoint("TestPoint", 5, 20);
@@ -208,6 +402,482 @@ public class QuadTreeTests {
         assertLeaf(getNode(stateAfterUpdate.getBottomRight()), point2);
     }
 
+    @Test
+    public void parallelUpdate_shouldUpdateTree_givenPointsHaveMoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        NamedPoint point5 = addPoint("5", 10, 10);
+
+        point1.moveTo(25, 75);
+        point2.moveTo(75, 75);
+        point3.moveTo(75, 25);
+        point4.moveTo(25, 25);
+        tree.update(ForkJoinPool.commonPool());
+
+        ImmutableNode<NamedPoint> stateAfterUpdate = tree.getState();
+        assertLeaf(getNode(stateAfterUpdate.getTopLeft()), point4, point5);
+        assertLeaf(getNode(stateAfterUpdate.getTopRight()), point3);
+        assertLeaf(getNode(stateAfterUpdate.getBottomLeft()), point1);
+        assertLeaf(getNode(stateAfterUpdate.getBottomRight()), point2);
+    }
+
+    @Test
+    public void parallelUpdate_shouldMatchUpdate_givenManyMovingPoints() {
+        Random random = new Random(42);
+        QuadTree<NamedPoint> parallelTree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+            parallelTree.add(points.get(i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int tick = 0; tick < 20; tick++) {
+            for (NamedPoint point : points) {
+                float x = Math.max(0, Math.min(100, point.getX() + random.nextFloat() * 10 - 5));
+                float y = Math.max(0, Math.min(100, point.getY() + random.nextFloat() * 10 - 5));
+                point.moveTo(x, y);
+            }
+            tree.update();
+            parallelTree.update(pool);
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            assertThat(parallelTree.queryByPointRadius(x, y, 20),
+                    containsInAnyOrder(tree.queryByPointRadius(x, y, 20).toArray()));
+            assertThat(parallelTree.queryByBoundingBox(0, 0, 100, 100), hasSize(points.size()));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void parallelUpdate_shouldRefreshCachedState_givenPointMovedWithinSubtree() {
+        tree = new QuadTree<>(0, 0, 100, 100, 1, 8);
+        addPoint("1", 1, 1);
+        NamedPoint point2 = addPoint("2", 2, 2);
+        addPoint("3", 11, 11);
+        BoundingBox area = new BoundingBox(9, 0, 11, 4);
+        assertThat(tree.getState().query(area), is(empty()));
+        point2.moveTo(10, 2);
+        tree.update(ForkJoinPool.commonPool());
+        assertThat(tree.getState().query(area), contains(point2));
+        assertThat(tree.queryByBoundingBox(9, 0, 2, 4), contains(point2));
+    }
+
+    @Test
+    public void getNodePool_shouldCountReusedNodes_givenNodeSplittingAndMergingRepeatedly() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 20, 20);
+        NamedPoint point3 = addPoint("3", 80, 80);
+        NamedPoint point4 = addPoint("4", 90, 90);
+        for (int i = 0; i < 3; i++) {
+            NamedPoint point5 = addPoint("5", 60, 20);
+            assertConnector(tree.getState());
+            tree.remove(point5);
+            assertLeaf(tree.getState(), point1, point2, point3, point4);
+        }
+        NodePool pool = tree.getNodePool();
+        assertThat(pool.getCreatedNodes(), is(4L));
+        assertThat(pool.getReusedNodes(), is(8L));
+        assertThat(pool.getPooledNodes(), is(4));
+        assertThat(tree.queryByBoundingBox(0, 0, 50, 50), containsInAnyOrder(point1, point2));
+    }
+
+    @Test
+    public void getNodePool_shouldDiscardNodes_givenPoolFull() {
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, MAX_DEPTH, 0);
+        addPoint("1", 10, 10);
+        addPoint("2", 20, 20);
+        addPoint("3", 80, 80);
+        addPoint("4", 90, 90);
+        tree.remove(addPoint("5", 60, 20));
+        tree.remove(addPoint("5", 60, 20));
+        NodePool pool = tree.getNodePool();
+        assertThat(pool.getCreatedNodes(), is(8L));
+        assertThat(pool.getReusedNodes(), is(0L));
+        assertThat(pool.getDiscardedNodes(), is(8L));
+        assertThat(pool.getPooledNodes(), is(0));
+    }
+
+    @Test
+    public void remove_shouldNotCoarsenTree_givenPointCountAboveMergeThreshold() {
+        tree = new QuadTree<>(0, 0, 100, 100, new ThresholdSplitPolicy(4, 2, 0, 1), MAX_DEPTH);
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 20, 20);
+        NamedPoint point3 = addPoint("3", 80, 80);
+        NamedPoint point4 = addPoint("4", 90, 90);
+        NamedPoint point5 = addPoint("5", 60, 20);
+        tree.remove(point5);
+        tree.remove(point4);
+        assertConnector(tree.getState());
+        tree.remove(point3);
+        assertLeaf(tree.getState(), point1, point2);
+    }
+
+    @Test
+    public void update_shouldCoarsenTree_givenNodeQuietForEnoughUpdates() {
+        tree = new QuadTree<>(0, 0, 100, 100, new ThresholdSplitPolicy(4, 4, 2, 1), MAX_DEPTH);
+        addPoint("1", 10, 10);
+        addPoint("2", 20, 20);
+        addPoint("3", 80, 80);
+        addPoint("4", 90, 90);
+        tree.remove(addPoint("5", 60, 20));
+        assertConnector(tree.getState());
+        tree.update();
+        assertConnector(tree.getState());
+        tree.update();
+        assertThat(tree.getState().getItems(), hasSize(4));
+    }
+
+    @Test
+    public void update_shouldNotCoarsenTree_givenNodeRefilledBeforeQuiet() {
+        tree = new QuadTree<>(0, 0, 100, 100, new ThresholdSplitPolicy(4, 4, 2, 1), MAX_DEPTH);
+        addPoint("1", 10, 10);
+        addPoint("2", 20, 20);
+        addPoint("3", 80, 80);
+        addPoint("4", 90, 90);
+        NamedPoint point5 = addPoint("5", 60, 20);
+        tree.remove(point5);
+        tree.update();
+        tree.add(point5);
+        tree.update();
+        tree.remove(point5);
+        tree.update();
+        assertConnector(tree.getState());
+        tree.update();
+        assertThat(tree.getState().getItems(), hasSize(4));
+    }
+
+    @Test
+    public void update_shouldCoarsenTreeOnlyEveryMergeInterval() {
+        tree = new QuadTree<>(0, 0, 100, 100, new ThresholdSplitPolicy(4, 4, 0, 3), MAX_DEPTH);
+        addPoint("1", 10, 10);
+        addPoint("2", 20, 20);
+        addPoint("3", 80, 80);
+        addPoint("4", 90, 90);
+        tree.remove(addPoint("5", 60, 20));
+        tree.update();
+        tree.update();
+        assertConnector(tree.getState());
+        tree.update();
+        assertThat(tree.getState().getItems(), hasSize(4));
+    }
+
+    @Test
+    public void update_shouldSplitBeyondMaxDepth_givenQueriedHotspotAndAdaptiveTuning() {
+        tree = new QuadTree<>(0, 0, 100, 100, 4, 2);
+        tree.setAdaptiveTuning(new AdaptiveTuning(0, 0, 3, 1));
+        List<NamedPoint> hotspot = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hotspot.add(addPoint(Integer.toString(i), 10 + i * 0.05f, 10 + i * 0.05f));
+        }
+        assertThat(levels(tree.getState()), is(2));
+        for (int i = 0; i < 5; i++) {
+            assertThat(tree.queryByBoundingBox(9, 9, 3, 3), containsInAnyOrder(hotspot.toArray()));
+            tree.update();
+        }
+        assertThat(levels(tree.getState()), is(5));
+        assertThat(tree.queryByBoundingBox(9, 9, 3, 3), containsInAnyOrder(hotspot.toArray()));
+    }
+
+    @Test
+    public void update_shouldCoarsenTree_givenPointsMovingBetweenLeavesAndAdaptiveTuning() {
+        tree.setAdaptiveTuning(new AdaptiveTuning(0, 3, 0, 1));
+        addPoint("1", 10, 10);
+        addPoint("2", 20, 20);
+        addPoint("3", 30, 30);
+        addPoint("4", 70, 10);
+        addPoint("5", 80, 20);
+        NamedPoint point6 = addPoint("6", 90, 30);
+        assertConnector(tree.getState());
+        point6.moveTo(40, 30);
+        tree.update();
+        assertThat(tree.getState().getItems(), hasSize(6));
+        assertHasNoChildren(tree.getState());
+    }
+
+    @Test
+    public void update_shouldNotTuneLeavesMergedAway_givenAdaptiveTuningWithoutPooling() {
+        tree = new QuadTree<>(0, 0, 100, 100, 8, 2, 0);
+        tree.setAdaptiveTuning(new AdaptiveTuning(2, 2, 0, 1));
+        NamedPoint leaver = addPoint("leaver", 10, 10);
+        addPoint("a", 20, 20);
+        addPoint("b", 30, 30);
+        List<NamedPoint> queried = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            queried.add(addPoint("q" + i, 60 + i * 5, 10 + i * 5));
+        }
+        assertConnector(tree.getState());
+        // The top left leaf sheds a point, so is coarsened, merging away the top right leaf that was queried
+        assertThat(tree.queryByBoundingBox(60, 10, 10, 10), hasSize(3));
+        leaver.moveTo(10, 60);
+        tree.update();
+
+        NamedPoint victim = queried.get(0);
+        assertTrue(tree.remove(victim));
+        assertFalse(tree.contains(victim));
+        Collection<NamedPoint> found = tree.queryByBoundingBox(0, 0, 100, 100);
+        assertThat(found, not(hasItem(victim)));
+        assertThat(found, hasSize(8));
+        assertThat(tree.count(new BoundingBox(0, 0, 100, 100)), is(8));
+    }
+
+    @Test
+    public void update_shouldStopSplittingHotspot_givenBoxesTooSmallToQuarter() {
+        tree = new QuadTree<>(0, 0, 100, 100, 4, 2);
+        tree.setAdaptiveTuning(new AdaptiveTuning(0, 0, 60, 1));
+        List<NamedPoint> hotspot = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hotspot.add(addPoint(Integer.toString(i), 10.3f, 10.3f));
+        }
+        // Queries with an edge through the hotspot have to test its points however small its leaf gets
+        for (int i = 0; i < 60; i++) {
+            assertThat(tree.queryByBoundingBox(10.3f, 9, 3, 3), containsInAnyOrder(hotspot.toArray()));
+            tree.update();
+        }
+        assertThat(levels(tree.getState()), lessThan(60));
+        assertThat(tree.queryByBoundingBox(10.3f, 9, 3, 3), containsInAnyOrder(hotspot.toArray()));
+    }
+
+    private static int levels(ImmutableNode<NamedPoint> node) {
+        return Stream.of(node.getTopLeft(), node.getTopRight(), node.getBottomLeft(), node.getBottomRight())
+                .filter(Optional::isPresent)
+                .mapToInt(child -> 1 + levels(child.get()))
+                .max()
+                .orElse(0);
+    }
+
+    @Test
+    public void getState_shouldShareUnchangedSubtrees() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        addPoint("2", 75, 25);
+        addPoint("3", 75, 75);
+        addPoint("4", 25, 75);
+        addPoint("5", 10, 10);
+        ImmutableNode<NamedPoint> before = tree.getState();
+        point1.moveTo(30, 30);
+        tree.update();
+        ImmutableNode<NamedPoint> after = tree.getState();
+        assertThat(after, is(not(sameInstance(before))));
+        assertThat(after.getTopLeft(), is(not(before.getTopLeft())));
+        assertThat(getNode(after.getTopRight()), is(sameInstance(getNode(before.getTopRight()))));
+        assertThat(getNode(after.getBottomRight()), is(sameInstance(getNode(before.getBottomRight()))));
+    }
+
+    @Test
+    public void getState_shouldOnlyChangeVersion_givenTreeChanged() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        addPoint("2", 75, 75);
+        ImmutableNode<NamedPoint> first = tree.getState();
+        tree.update();
+        assertThat(tree.getState(), is(sameInstance(first)));
+        point1.moveTo(30, 30);
+        tree.update();
+        ImmutableNode<NamedPoint> second = tree.getState();
+        assertThat(second.getVersion(), is(first.getVersion() + 1));
+    }
+
+    @Test
+    public void diff_shouldFindAddedRemovedAndMovedPoints() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        addPoint("5", 10, 10);
+        ImmutableNode<NamedPoint> before = tree.getState();
+        point1.moveTo(30, 30);
+        point2.moveTo(60, 60);
+        NamedPoint point6 = addPoint("6", 90, 10);
+        tree.remove(point3);
+        tree.update();
+        ImmutableNode<NamedPoint> after = tree.getState();
+        StateDiff<NamedPoint> diff = ImmutableNode.diff(before, after);
+        assertThat(diff.getMoved(), containsInAnyOrder(point1, point2));
+        assertThat(diff.getAdded(), contains(point6));
+        assertThat(diff.getRemoved(), contains(point3));
+        assertThat(diff.getChangedNodes(), not(hasItem(getNode(after.getBottomLeft()))));
+        assertThat(getNode(after.getBottomLeft()).getItems(), contains(point4));
+        assertTrue(ImmutableNode.diff(after, tree.getState()).isEmpty());
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void getSnapshot_shouldThrowException_givenSnapshotsNotPublished() {
+        tree.getSnapshot();
+    }
+
+    @Test
+    public void getSnapshot_shouldHoldPoints_givenPointsLoadedByAddAll() {
+        tree.setPublishingSnapshots(true);
+        NamedPoint point1 = new NamedPoint("1", 25, 25);
+        NamedPoint point2 = new NamedPoint("2", 75, 75);
+        tree.addAll(Arrays.asList(point1, point2));
+        tree.update();
+        assertThat(tree.getSnapshot().query(new BoundingBox(0, 0, 100, 100)), containsInAnyOrder(point1, point2));
+        assertThat(tree.getState().getItems(), containsInAnyOrder(point1, point2));
+    }
+
+    @Test
+    public void getSnapshot_shouldQueryPositionsAtLastUpdate() {
+        tree.setPublishingSnapshots(true);
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 75);
+        tree.update();
+        ImmutableNode<NamedPoint> snapshot = tree.getSnapshot();
+        point1.moveTo(75, 80);
+        BoundingBox bottomRight = new BoundingBox(50, 50, 100, 100);
+        assertThat(snapshot.query(bottomRight), contains(point2));
+        tree.update();
+        assertThat(tree.getSnapshot().query(bottomRight), containsInAnyOrder(point1, point2));
+        assertThat(snapshot.query(bottomRight), contains(point2));
+    }
+
+    private static final PointCodec<NamedPoint> NAMED_POINT_CODEC = new PointCodec<NamedPoint>() {
+        @Override
+        public int getMaxEncodedBytes() {
+            return Short.BYTES + 64 + 2 * Float.BYTES;
+        }
+
+        @Override
+        public void encode(NamedPoint point, ByteBuffer buffer) {
+            byte[] name = point.getName().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length).put(name).putFloat(point.getX()).putFloat(point.getY());
+        }
+
+        @Override
+        public NamedPoint decode(ByteBuffer buffer) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            return new NamedPoint(new String(name, StandardCharsets.UTF_8), buffer.getFloat(), buffer.getFloat());
+        }
+    };
+
+    @Test
+    public void readFrom_shouldRebuildTreeWrittenToChannel() throws IOException {
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        Random random = new Random(22);
+        for (int i = 0; i < 3000; i++) {
+            addPoint(Integer.toString(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel, NAMED_POINT_CODEC);
+        }
+        QuadTree<NamedPoint> read;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read = QuadTree.readFrom(channel, NAMED_POINT_CODEC, new ThresholdSplitPolicy(BUCKET_SIZE), 0);
+        }
+        assertSameStructure(tree.getState(), read.getState());
+        assertThat(read.count(new BoundingBox(0, 0, 100, 100)), is(3000));
+        assertThat(read.getNodePool().getCreatedNodes(), is(tree.getNodePool().getCreatedNodes()));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenChannelWithoutTree() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), new byte[64]);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            QuadTree.readFrom(channel, NAMED_POINT_CODEC);
+        }
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenChannelEndingMidPoint() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            addPoint("point" + i, i * 5, i * 5);
+        }
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel, NAMED_POINT_CODEC);
+            channel.truncate(channel.size() - 3);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            QuadTree.readFrom(channel, NAMED_POINT_CODEC);
+        }
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenNegativePointCount() throws IOException {
+        readRawTree(1, ByteBuffer.allocate(5).put((byte) 0).putInt(-1));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenNodesNestedBeyondMaxDepth() throws IOException {
+        ByteBuffer nodes = ByteBuffer.allocate(1000);
+        while (nodes.hasRemaining()) {
+            nodes.put((byte) 1);
+        }
+        readRawTree(2, nodes);
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenHeaderBoundsEndingBeforeStart() throws IOException {
+        readRawTree(100, 0, 0, 100, 1, ByteBuffer.allocate(5).put((byte) 0).putInt(0));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void readFrom_shouldThrowException_givenZeroHeaderDepth() throws IOException {
+        readRawTree(0, ByteBuffer.allocate(5).put((byte) 0).putInt(0));
+    }
+
+    // Reads a tree of the given depth over the whole of the tree area, with the given nodes and no points
+    private void readRawTree(int depth, ByteBuffer nodes) throws IOException {
+        readRawTree(0, 0, 100, 100, depth, nodes);
+    }
+
+    private void readRawTree(float startX, float startY, float endX, float endY, int depth, ByteBuffer nodes)
+            throws IOException {
+        File file = folder.newFile();
+        ByteBuffer header = ByteBuffer.allocate(32)
+                .putInt(0x51545245).putInt(1)
+                .putFloat(startX).putFloat(startY).putFloat(endX).putFloat(endY)
+                .putInt(depth).putInt(0);
+        header.flip();
+        nodes.flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(header);
+            channel.write(nodes);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            QuadTree.readFrom(channel, NAMED_POINT_CODEC);
+        }
+    }
+
+    @Test
+    public void readFrom_shouldReadTree_givenTreeSplitBeyondMaxDepthByAdaptiveTuning() throws IOException {
+        tree = new QuadTree<>(0, 0, 100, 100, 4, 2);
+        tree.setAdaptiveTuning(new AdaptiveTuning(0, 0, 3, 1));
+        for (int i = 0; i < 20; i++) {
+            addPoint(Integer.toString(i), 10 + i * 0.05f, 10 + i * 0.05f);
+        }
+        for (int i = 0; i < 5; i++) {
+            tree.queryByBoundingBox(9, 9, 3, 3);
+            tree.update();
+        }
+        assertThat(levels(tree.getState()), greaterThan(2));
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            tree.writeTo(channel, NAMED_POINT_CODEC);
+        }
+        QuadTree<NamedPoint> read;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read = QuadTree.readFrom(channel, NAMED_POINT_CODEC, new ThresholdSplitPolicy(4), 0);
+        }
+        assertThat(levels(read.getState()), is(2));
+        assertThat(read.queryByBoundingBox(9, 9, 3, 3), hasSize(20));
+    }
+
+    private static void assertSameStructure(ImmutableNode<NamedPoint> expected, ImmutableNode<NamedPoint> actual) {
+        assertThat(actual.getItems(), containsInAnyOrder(expected.getItems().toArray()));
+        assertThat(actual.getTopLeft().isPresent(), is(expected.getTopLeft().isPresent()));
+        if (expected.getTopLeft().isPresent()) {
+            assertSameStructure(getNode(expected.getTopLeft()), getNode(actual.getTopLeft()));
+            assertSameStructure(getNode(expected.getTopRight()), getNode(actual.getTopRight()));
+            assertSameStructure(getNode(expected.getBottomLeft()), getNode(actual.getBottomLeft()));
+            assertSameStructure(getNode(expected.getBottomRight()), getNode(actual.getBottomRight()));
+        }
+    }
+
     @Test
     public void update_shouldNotUpdateTree_givenPointsHaveNotMoved() {
         NamedPoint point1 = addPoint("1", 25, 25);
@@ -216,6 +886,88 @@ public class QuadTreeTests {
         assertLeaf(tree.getState(), point1);
     }
 
+    @Test
+    public void updateMoved_shouldUpdateTree_givenPointsReportedAsMoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        NamedPoint point5 = addPoint("5", 10, 10);
+
+        point1.moveTo(25, 75);
+        tree.moved(point1);
+        tree.moveTo(point2, 75, 75);
+        point2.moveTo(75, 75);
+        tree.updateMoved();
+
+        ImmutableNode<NamedPoint> stateAfterUpdate = tree.getState();
+        assertLeaf(getNode(stateAfterUpdate.getTopLeft()), point5);
+        assertLeaf(getNode(stateAfterUpdate.getBottomLeft()), point1, point4);
+        assertLeaf(getNode(stateAfterUpdate.getBottomRight()), point2, point3);
+    }
+
+    @Test
+    public void updateMoved_shouldNotUpdateTree_givenPointsNotReportedAsMoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        NamedPoint point2 = addPoint("2", 75, 25);
+        NamedPoint point3 = addPoint("3", 75, 75);
+        NamedPoint point4 = addPoint("4", 25, 75);
+        NamedPoint point5 = addPoint("5", 10, 10);
+
+        point1.moveTo(25, 75);
+        tree.updateMoved();
+
+        assertLeaf(getNode(tree.getState().getTopLeft()), point1, point5);
+    }
+
+    @Test
+    public void updateMoved_shouldNotThrowException_givenMovedPointRemoved() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        tree.moved(point1);
+        tree.remove(point1);
+        tree.updateMoved();
+        assertFalse(tree.contains(point1));
+    }
+
+    @Test
+    public void moveTo_shouldUpdateTreeStraightAway_givenPointStaysInLeaf() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        point1.moveTo(22, 24);
+        tree.moveTo(point1, 22, 24);
+        assertThat(tree.queryByPointRadius(22, 24, 1), contains(point1));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void updateMoved_shouldThrowException_givenPointNotAtPositionGivenToMoveTo() {
+        NamedPoint point1 = addPoint("1", 25, 25);
+        addPoint("2", 75, 25);
+        addPoint("3", 75, 75);
+        addPoint("4", 25, 75);
+        addPoint("5", 10, 10);
+        tree.moveTo(point1, 80, 80);
+        point1.moveTo(70, 80);
+        tree.updateMoved();
+    }
+
+    @Test
+    public void queryByPointRadius_shouldReturnPointsAtLastUpdatedPosition_givenPointsMovedWithoutUpdate() {
+        NamedPoint point1 = addPoint("1", 20, 20);
+        point1.moveTo(22, 24);
+        assertThat(tree.queryByPointRadius(20, 20, 1), contains(point1));
+        tree.update();
+        assertThat(tree.queryByPointRadius(22, 24, 1), contains(point1));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void moved_shouldThrowException_givenPointNotInTree() {
+        tree.moved(new NamedPoint("TestPoint", 20, 20));
+    }
+
+    @Test(expected = QuadTreeException.class)
+    public void moveTo_shouldThrowException_givenPointNotInTree() {
+        tree.moveTo(new NamedPoint("TestPoint", 20, 20), 30, 30);
+    }
+
     @Test
     public void queryByPointRadius_shouldReturnPoints_givenPointsMovedIntoQueryArea() {
         // Add point & make sure its outside of query range
@@ -307,6 +1059,411 @@ public class QuadTreeTests {
         assertThat(tree.queryByBoundingBox(-10,-10, 40, 40), containsInAnyOrder(point1, point2, point3));
     }
 
+    @Test
+    public void queryByPointRadius_shouldPassPointsToConsumer_givenAreaEncompassingSomePoints() {
+        NamedPoint point1 = addPoint("TestPoint1", 10, 10);
+        NamedPoint point2 = addPoint("TestPoint2", 42, 70);
+        NamedPoint point3 = addPoint("TestPoint3", 95, 85);
+        NamedPoint point4 = addPoint("TestPoint4", 76, 70);
+        NamedPoint point5 = addPoint("TestPoint5", 88, 45);
+        List<NamedPoint> found = new ArrayList<>();
+        tree.queryByPointRadius(80, 60, 25, found::add);
+        assertThat(found, containsInAnyOrder(point4, point5));
+    }
+
+    @Test
+    public void query_shouldPassPointsToConsumer_givenAreaEncompassingSomePoints() {
+        NamedPoint point1 = addPoint("TestPoint1", 10, 10);
+        NamedPoint point2 = addPoint("TestPoint2", 42, 70);
+        NamedPoint point3 = addPoint("TestPoint3", 95, 85);
+        NamedPoint point4 = addPoint("TestPoint4", 76, 70);
+        NamedPoint point5 = addPoint("TestPoint5", 88, 45);
+        List<NamedPoint> found = new ArrayList<>();
+        tree.query(new BoundingBox(75, 60, 100, 90), found::add);
+        assertThat(found, containsInAnyOrder(point3, point4));
+    }
+
+    @Test
+    public void query_shouldAddPointsToCollection_givenCollectionAlreadyPopulated() {
+        NamedPoint point1 = addPoint("TestPoint1", 10, 10);
+        NamedPoint point2 = addPoint("TestPoint2", 42, 70);
+        NamedPoint existing = new NamedPoint("Existing", 0, 0);
+        List<NamedPoint> found = new ArrayList<>();
+        found.add(existing);
+        tree.query(new Circle(40, 70, 5), found);
+        assertThat(found, contains(existing, point2));
+    }
+
+    @Test
+    public void queryAll_shouldPassEachAreaItsPoints_givenOverlappingAreas() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 95, 85);
+        NamedPoint point4 = addPoint("4", 76, 70);
+        NamedPoint point5 = addPoint("5", 88, 45);
+        Circle circle = new Circle(80, 60, 25);
+        BoundingBox box = new BoundingBox(0, 0, 80, 80);
+        Circle empty = new Circle(10, 90, 5);
+        List<String> found = new ArrayList<>();
+        tree.queryAll(Arrays.asList(circle, box, empty), (area, p) -> found.add(area + " " + p.getName()));
+        assertThat(found, containsInAnyOrder(circle + " 4", circle + " 5", box + " 1", box + " 2", box + " 4"));
+    }
+
+    @Test
+    public void queryAll_shouldMatchQuery_givenManyAreas() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        List<Circle> areas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            areas.add(new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 20));
+        }
+        List<String> expected = new ArrayList<>();
+        areas.forEach(area -> tree.query(area, (NamedPoint p) -> expected.add(area + " " + p.getName())));
+        List<String> found = new ArrayList<>();
+        tree.queryAll(areas, (area, p) -> found.add(area + " " + p.getName()));
+        Collection<String> foundInParallel = new ConcurrentLinkedQueue<>();
+        tree.queryAll(areas, (area, p) -> foundInParallel.add(area + " " + p.getName()), new ForkJoinPool(4));
+        assertThat(found, containsInAnyOrder(expected.toArray()));
+        assertThat(foundInParallel, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void pairsWithin_shouldReportEachPairOnce_givenPointsInDifferentNodes() {
+        addPoint("1", 48, 48);
+        addPoint("2", 52, 52);
+        addPoint("3", 49, 53);
+        addPoint("4", 90, 90);
+        addPoint("5", 10, 10);
+        addPoint("6", 12, 9);
+        List<String> pairs = new ArrayList<>();
+        tree.pairsWithin(6, (a, b) -> pairs.add(pairName(a, b)));
+        assertThat(pairs, containsInAnyOrder("1-2", "1-3", "2-3", "5-6"));
+    }
+
+    @Test
+    public void pairsWithin_shouldMatchQueryByPointRadius_givenManyPoints() {
+        Random random = new Random(42);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        List<String> expected = new ArrayList<>();
+        for (NamedPoint a : points) {
+            for (NamedPoint b : points) {
+                float dx = a.getX() - b.getX();
+                float dy = a.getY() - b.getY();
+                if (Integer.parseInt(a.getName()) < Integer.parseInt(b.getName()) && dx*dx + dy*dy <= 25) {
+                    expected.add(pairName(a, b));
+                }
+            }
+        }
+        List<String> pairs = new ArrayList<>();
+        tree.pairsWithin(5, (a, b) -> pairs.add(pairName(a, b)));
+        assertThat(pairs, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pairsWithin_shouldThrowException_givenNegativeDistance() {
+        addPoint("1", 10, 10);
+        addPoint("2", 11, 11);
+        tree.pairsWithin(-2, (a, b) -> {});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pairsWithin_shouldThrowException_givenNaNDistance() {
+        tree.pairsWithin(Float.NaN, (a, b) -> {});
+    }
+
+    private String pairName(NamedPoint a, NamedPoint b) {
+        int first = Integer.parseInt(a.getName());
+        int second = Integer.parseInt(b.getName());
+        return Math.min(first, second) + "-" + Math.max(first, second);
+    }
+
+    @Test
+    public void count_shouldMatchQuery_givenPointsMovingAndRemoved() {
+        Random random = new Random(42);
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        for (int tick = 0; tick < 20; tick++) {
+            for (NamedPoint point : points) {
+                float x = Math.max(0, Math.min(100, point.getX() + random.nextFloat() * 10 - 5));
+                float y = Math.max(0, Math.min(100, point.getY() + random.nextFloat() * 10 - 5));
+                point.moveTo(x, y);
+            }
+            if (tick % 2 == 0) {
+                tree.update();
+            } else {
+                tree.update(ForkJoinPool.commonPool());
+            }
+            tree.remove(points.get(tick));
+            Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 50);
+            BoundingBox box = new BoundingBox(random.nextFloat() * 50, random.nextFloat() * 50, 100, 100);
+            List<NamedPoint> inCircle = new ArrayList<>();
+            tree.query(circle, inCircle);
+            List<NamedPoint> inBox = new ArrayList<>();
+            tree.query(box, inBox);
+            assertThat(tree.count(circle), is(inCircle.size()));
+            assertThat(tree.count(box), is(inBox.size()));
+            assertThat(tree.count(new BoundingBox(-1, -1, 101, 101)), is(points.size() - tick - 1));
+        }
+    }
+
+    @Test
+    public void aggregate_shouldSummarisePointsInArea() {
+        addPoint("1", 10, 10);
+        addPoint("2", 42, 70);
+        addPoint("3", 95, 85);
+        addPoint("4", 76, 70);
+        addPoint("5", 88, 45);
+        Summary summary = tree.aggregate(new Circle(80, 60, 25), new Summary());
+        assertThat(summary.getCount(), is(2));
+        assertThat(summary.getCentroidX(), is(82F));
+        assertThat(summary.getCentroidY(), is(57.5F));
+        assertThat(summary.getMaxY(), is(70F));
+    }
+
+    @Test
+    public void aggregate_shouldMatchQuery_givenPointsMoving() {
+        Random random = new Random(42);
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        List<NamedPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        for (int tick = 0; tick < 20; tick++) {
+            for (NamedPoint point : points) {
+                float x = Math.max(0, Math.min(100, point.getX() + random.nextFloat() * 10 - 5));
+                float y = Math.max(0, Math.min(100, point.getY() + random.nextFloat() * 10 - 5));
+                point.moveTo(x, y);
+            }
+            tree.update();
+            tree.remove(points.get(tick));
+            for (int query = 0; query < 5; query++) {
+                Circle circle = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 60);
+                Summary expected = new Summary();
+                tree.query(circle, (NamedPoint p) -> expected.accept(p, p.getX(), p.getY()));
+                Summary summary = tree.aggregate(circle, new Summary());
+                assertThat(summary.getCount(), is(expected.getCount()));
+                assertThat(summary.getSumX(), closeTo(expected.getSumX(), 0.01));
+                assertThat(summary.getSumY(), closeTo(expected.getSumY(), 0.01));
+                assertThat(summary.getMinX(), is(expected.getMinX()));
+                assertThat(summary.getMaxY(), is(expected.getMaxY()));
+            }
+        }
+    }
+
+    @Test
+    public void aggregate_shouldPassEachPoint_givenAggregatorNotAcceptingSummaries() {
+        for (int i = 0; i < 100; i++) {
+            addPoint(String.valueOf(i), i, i);
+        }
+        List<NamedPoint> found = new ArrayList<>();
+        tree.aggregate(new BoundingBox(0, 0, 100, 100), (NamedPoint p, float x, float y) -> found.add(p));
+        assertThat(found, hasSize(100));
+    }
+
+    @Test
+    public void aggregate_shouldMatchQuery_givenAggregationsFromManyThreads() throws Exception {
+        Random random = new Random(14);
+        tree = new QuadTree<>(0, 0, 100, 100, BUCKET_SIZE, 8);
+        for (int i = 0; i < 2000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        List<Circle> areas = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Circle area = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 60);
+            areas.add(area);
+            List<NamedPoint> found = new ArrayList<>();
+            tree.query(area, found::add);
+            expected.add(found.size());
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                results.add(readers.submit(() -> {
+                    List<Integer> counts = new ArrayList<>();
+                    for (Circle area : areas) {
+                        counts.add(tree.aggregate(area, new Summary()).getCount());
+                    }
+                    return counts;
+                }));
+            }
+            for (Future<List<Integer>> result : results) {
+                assertThat(result.get(), is(expected));
+            }
+        } finally {
+            readers.shutdown();
+        }
+    }
+
+    @Test
+    public void stream_shouldMatchQuery_givenManyPoints() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        for (Shape area : Arrays.asList(new Circle(30, 60, 25), new BoundingBox(-1, -1, 101, 101),
+                new BoundingBox(10, 20, 15, 90), new Circle(200, 200, 5))) {
+            List<NamedPoint> expected = new ArrayList<>();
+            tree.query(area, expected);
+            assertThat(tree.stream(area).collect(toList()), containsInAnyOrder(expected.toArray()));
+            assertThat(tree.stream(area).parallel().collect(toList()), containsInAnyOrder(expected.toArray()));
+        }
+    }
+
+    @Test
+    public void stream_shouldStopSearching_givenMatchFound() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        List<NamedPoint> seen = new ArrayList<>();
+        assertTrue(tree.stream(new BoundingBox(-1, -1, 101, 101)).peek(seen::add).anyMatch(p -> true));
+        assertThat(seen, hasSize(1));
+        assertFalse(tree.stream(new Circle(200, 200, 5)).findFirst().isPresent());
+    }
+
+    @Test
+    public void stream_shouldSplitByQuadrant() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        Spliterator<NamedPoint> first = tree.stream(new Circle(50, 50, 30)).spliterator();
+        Spliterator<NamedPoint> second = first.trySplit();
+        assertNotNull(second);
+        List<NamedPoint> found = new ArrayList<>();
+        first.forEachRemaining(found::add);
+        int firstCount = found.size();
+        second.forEachRemaining(found::add);
+        assertThat(firstCount, allOf(greaterThan(0), lessThan(found.size())));
+        assertThat(found, hasSize(tree.count(new Circle(50, 50, 30))));
+    }
+
+    @Test
+    public void queryByPointRadius_shouldFindEveryPoint_givenQueriesMadeFromInsideConsumer() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        int expected = tree.count(new Circle(50, 50, 30));
+        List<NamedPoint> found = new ArrayList<>();
+        tree.queryByPointRadius(50, 50, 30, p -> {
+            found.add(p);
+            tree.count(new Circle(p.getX(), p.getY(), 5));
+            tree.queryByPointRadius(10, 90, 20, q -> {});
+        });
+        assertThat(found, hasSize(expected));
+    }
+
+    @Test
+    public void query_shouldFindSamePoints_givenQueriesFromManyThreads() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            addPoint(String.valueOf(i), random.nextFloat() * 100, random.nextFloat() * 100);
+        }
+        List<Circle> areas = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Circle area = new Circle(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 30);
+            areas.add(area);
+            expected.add(tree.count(area));
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                results.add(readers.submit(() -> {
+                    List<Integer> counts = new ArrayList<>();
+                    for (Circle area : areas) {
+                        List<NamedPoint> found = new ArrayList<>();
+                        tree.query(area, found::add);
+                        counts.add(found.size());
+                    }
+                    return counts;
+                }));
+            }
+            for (Future<List<Integer>> result : results) {
+                assertThat(result.get(), is(expected));
+            }
+        } finally {
+            readers.shutdown();
+        }
+    }
+
+    @Test
+    public void nearest_shouldReturnNothing_givenEmptyTree() {
+        assertFalse(tree.nearest(50, 50).isPresent());
+    }
+
+    @Test
+    public void nearest_shouldReturnNearestPoint_givenPointsInDifferentNodes() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 95, 85);
+        NamedPoint point4 = addPoint("4", 76, 70);
+        NamedPoint point5 = addPoint("5", 88, 45);
+        assertThat(tree.nearest(52, 52).get(), is(point2));
+    }
+
+    @Test
+    public void nearest_shouldReturnKNearestPointsInOrder() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 95, 85);
+        NamedPoint point4 = addPoint("4", 76, 70);
+        NamedPoint point5 = addPoint("5", 88, 45);
+        NamedPoint point6 = addPoint("6", 20, 20);
+        assertThat(tree.nearest(80, 60, 3), contains(point4, point5, point3));
+    }
+
+    @Test
+    public void nearest_shouldReturnAllPoints_givenKGreaterThanPointCount() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        assertThat(tree.nearest(0, 0, 5), contains(point1, point2));
+    }
+
+    @Test
+    public void nearest_shouldReturnOnlyPointsWithinMaxDistance() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 42, 70);
+        NamedPoint point3 = addPoint("3", 12, 14);
+        assertThat(tree.nearest(10, 12, 3, 5), containsInAnyOrder(point1, point3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNegativeMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, -10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNaNMaxDistance() {
+        addPoint("1", 50, 50);
+        tree.nearest(50, 50, 3, Float.NaN);
+    }
+
+    @Test
+    public void nearest_shouldReturnPoints_givenQueryOutsideTreeBounds() {
+        NamedPoint point1 = addPoint("1", 10, 10);
+        NamedPoint point2 = addPoint("2", 90, 90);
+        assertThat(tree.nearest(150, 150, 1), contains(point2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_shouldThrowException_givenNonPositiveK() {
+        tree.nearest(10, 10, 0);
+    }
+
     //TODO: Test that get state should return immutable result (Maybe test this in immutable state classes tests)
 
 }
@@ -0,0 +1,43 @@
+package co.jfgreen.quadtree;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.*;
+
+public class SummaryTests {
+
+    @Test
+    public void accept_shouldSummarisePoints() {
+        Summary summary = new Summary();
+        summary.accept("1", 10, 20);
+        summary.accept("2", 30, 5);
+        assertThat(summary.getCount(), is(2));
+        assertThat(summary.getCentroidX(), is(20F));
+        assertThat(summary.getCentroidY(), is(12.5F));
+        assertThat(summary.getMinX(), is(10F));
+        assertThat(summary.getMinY(), is(5F));
+        assertThat(summary.getMaxX(), is(30F));
+        assertThat(summary.getMaxY(), is(20F));
+    }
+
+    @Test
+    public void accept_shouldCombineSummaries() {
+        Summary first = new Summary();
+        first.accept("1", 10, 20);
+        Summary second = new Summary();
+        second.accept("2", 30, 5);
+        second.accept("3", 20, 5);
+        first.accept(second);
+        assertThat(first.getCount(), is(3));
+        assertThat(first.getSumX(), is(60.0));
+        assertThat(first.getMaxX(), is(30F));
+        assertThat(first.getMinY(), is(5F));
+    }
+
+    @Test
+    public void getCentroidX_shouldReturnNaN_givenNoPoints() {
+        assertTrue(Float.isNaN(new Summary().getCentroidX()));
+    }
+
+}
@@ -0,0 +1,53 @@
+package co.jfgreen.quadtree.benchmark;
+
+import co.jfgreen.quadtree.LinearQuadTree;
+import co.jfgreen.quadtree.benchmark.model.Agent;
+import co.jfgreen.quadtree.benchmark.model.Swarm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+
+import static co.jfgreen.quadtree.benchmark.SwarmConfig.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class LinearQuadTreeBenchmark {
+
+    private Swarm swarm;
+
+    private final static int BUCKET_SIZE = 100;
+    private final static int MAX_DEPTH = 5;
+
+    private LinearQuadTree<Agent> quadtree;
+
+    @Setup
+    public void setup() {
+        swarm = new Swarm(WORLD_SIZE, WORLD_SIZE, AGENT_COUNT);
+        quadtree = new LinearQuadTree<>(0,0, swarm.getWidth(), swarm.getHeight(), BUCKET_SIZE, MAX_DEPTH);
+        swarm.getAgents().forEach(quadtree::add);
+    }
+
+    @Benchmark
+    public void testPointRadiusQuery(Blackhole blackhole) {
+        localityCheckEachAgent(CIRCLE_RADIUS, blackhole::consume);
+        swarm.tick();
+        quadtree.update();
+    }
+
+    // Queries alone, so that the allocation rate reported by the GC profiler is just that of the query path
+    @Benchmark
+    public void testPointRadiusQueryOnly(Blackhole blackhole) {
+        localityCheckEachAgent(CIRCLE_RADIUS, blackhole::consume);
+    }
+
+    public void localityCheckEachAgent(float radius, Consumer<Agent> consumer) {
+        for (Agent agent : swarm.getAgents()) {
+            quadtree.queryByPointRadius(agent.getX(), agent.getY(), radius, consumer);
+        }
+    }
+
+
+}
@@ -0,0 +1,117 @@
+package co.jfgreen.quadtree.benchmark;
+
+import co.jfgreen.quadtree.DoublePoint2D;
+import co.jfgreen.quadtree.DoubleQuadTree;
+import co.jfgreen.quadtree.LinearQuadTree;
+import co.jfgreen.quadtree.QuadTree;
+import co.jfgreen.quadtree.benchmark.model.Agent;
+import co.jfgreen.quadtree.benchmark.model.Swarm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static co.jfgreen.quadtree.benchmark.SwarmConfig.*;
+
+// The same swarm in a float tree and a double tree with the same layout, to show what double precision costs.
+// Only the Morton ordered trees come in double precision, so QuadTree is run too, to set both against the
+// float tree most callers start from.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PrecisionBenchmark {
+
+    private final static int BUCKET_SIZE = 100;
+    private final static int MAX_DEPTH = 5;
+
+    private Swarm swarm;
+    private QuadTree<Agent> quadTree;
+    private LinearQuadTree<Agent> floatTree;
+    private DoubleQuadTree<DoubleAgent> doubleTree;
+    private List<DoubleAgent> doubleAgents;
+
+    private static class DoubleAgent implements DoublePoint2D {
+
+        private final Agent agent;
+
+        private DoubleAgent(Agent agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public double getX() {
+            return agent.getX();
+        }
+
+        @Override
+        public double getY() {
+            return agent.getY();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        swarm = new Swarm(WORLD_SIZE, WORLD_SIZE, AGENT_COUNT);
+        quadTree = new QuadTree<>(0, 0, swarm.getWidth(), swarm.getHeight(), BUCKET_SIZE, MAX_DEPTH);
+        floatTree = new LinearQuadTree<>(0, 0, swarm.getWidth(), swarm.getHeight(), BUCKET_SIZE, MAX_DEPTH);
+        doubleTree = new DoubleQuadTree<>(0, 0, swarm.getWidth(), swarm.getHeight(), BUCKET_SIZE, MAX_DEPTH);
+        doubleAgents = new ArrayList<>();
+        for (Agent agent : swarm.getAgents()) {
+            quadTree.add(agent);
+            floatTree.add(agent);
+            DoubleAgent doubleAgent = new DoubleAgent(agent);
+            doubleAgents.add(doubleAgent);
+            doubleTree.add(doubleAgent);
+        }
+    }
+
+    @Benchmark
+    public void testQuadTreePointRadiusQuery(Blackhole blackhole) {
+        for (Agent agent : swarm.getAgents()) {
+            quadTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+        swarm.tick();
+        quadTree.update();
+    }
+
+    @Benchmark
+    public void testFloatPointRadiusQuery(Blackhole blackhole) {
+        for (Agent agent : swarm.getAgents()) {
+            floatTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+        swarm.tick();
+        floatTree.update();
+    }
+
+    @Benchmark
+    public void testDoublePointRadiusQuery(Blackhole blackhole) {
+        for (DoubleAgent agent : doubleAgents) {
+            doubleTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+        swarm.tick();
+        doubleTree.update();
+    }
+
+    @Benchmark
+    public void testQuadTreePointRadiusQueryOnly(Blackhole blackhole) {
+        for (Agent agent : swarm.getAgents()) {
+            quadTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void testFloatPointRadiusQueryOnly(Blackhole blackhole) {
+        for (Agent agent : swarm.getAgents()) {
+            floatTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void testDoublePointRadiusQueryOnly(Blackhole blackhole) {
+        for (DoubleAgent agent : doubleAgents) {
+            doubleTree.queryByPointRadius(agent.getX(), agent.getY(), CIRCLE_RADIUS, blackhole::consume);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package co.jfgreen.quadtree.benchmark;
 
+import co.jfgreen.quadtree.Circle;
 import co.jfgreen.quadtree.QuadTree;
 import co.jfgreen.quadtree.benchmark.model.Agent;
 import co.jfgreen.quadtree.benchmark.model.Swarm;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import static co.jfgreen.quadtree.benchmark.SwarmConfig.*;
@@ -29,16 +35,51 @@ public class QuadTreeBenchmark {
     }
 
     @Benchmark
-    public void testPointRadiusQuery() {
-        localityCheckEachAgent(CIRCLE_RADIUS);
+    public void testPointRadiusQuery(Blackhole blackhole) {
+        localityCheckEachAgent(CIRCLE_RADIUS, blackhole::consume);
         swarm.tick();
         quadtree.update();
     }
 
-    public void localityCheckEachAgent(float radius) {
-        swarm.getAgents().forEach(agent -> quadtree.queryByPointRadius(agent.getX(), agent.getY(), radius));
+    // Queries alone, so that the allocation rate reported by the GC profiler is just that of the query path
+    @Benchmark
+    public void testPointRadiusQueryOnly(Blackhole blackhole) {
+        localityCheckEachAgent(CIRCLE_RADIUS, blackhole::consume);
     }
 
+    // The same queries as testPointRadiusQueryOnly, answered in one descent of the tree
+    @Benchmark
+    public void testBatchPointRadiusQueryOnly(Blackhole blackhole) {
+        List<Circle> areas = new ArrayList<>(AGENT_COUNT);
+        for (Agent agent : swarm.getAgents()) {
+            areas.add(new Circle(agent.getX(), agent.getY(), CIRCLE_RADIUS));
+        }
+        quadtree.queryAll(areas, (area, agent) -> blackhole.consume(agent));
+    }
 
-}
+    // Every pair of agents within the radius, each found once rather than from both ends
+    @Benchmark
+    public void testPairsWithinOnly(Blackhole blackhole) {
+        quadtree.pairsWithin(CIRCLE_RADIUS, (a, b) -> blackhole.consume(a));
+    }
 
+    @Benchmark
+    public void testUpdateOnly() {
+        swarm.tick();
+        quadtree.update();
+    }
+
+    @Benchmark
+    public void testParallelUpdateOnly() {
+        swarm.tick();
+        quadtree.update(ForkJoinPool.commonPool());
+    }
+
+    public void localityCheckEachAgent(float radius, Consumer<Agent> consumer) {
+        for (Agent agent : swarm.getAgents()) {
+            quadtree.queryByPointRadius(agent.getX(), agent.getY(), radius, consumer);
+        }
+    }
+
+
+}
@@ -0,0 +1,76 @@
+package co.jfgreen.quadtree.benchmark;
+
+import co.jfgreen.quadtree.BoundingBox;
+import co.jfgreen.quadtree.Circle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The point and box tests that queries make, one at a time and in batches
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ShapeBenchmark {
+
+    private final static int POINT_COUNT = 1024;
+
+    private final float[] xs = new float[POINT_COUNT];
+    private final float[] ys = new float[POINT_COUNT];
+    private final boolean[] inside = new boolean[POINT_COUNT];
+    private final BoundingBox[] boxes = new BoundingBox[POINT_COUNT];
+    private final Circle circle = new Circle(400, 400, 150);
+    private final BoundingBox box = new BoundingBox(250, 250, 550, 550);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xs[i] = random.nextFloat() * 800;
+            ys[i] = random.nextFloat() * 800;
+            boxes[i] = new BoundingBox(xs[i], ys[i], xs[i] + 50, ys[i] + 50);
+        }
+    }
+
+    @Benchmark
+    public void testCircleContainsPoint(Blackhole blackhole) {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            blackhole.consume(circle.contains(xs[i], ys[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean[] testCircleContainsPoints() {
+        circle.contains(xs, ys, POINT_COUNT, inside);
+        return inside;
+    }
+
+    @Benchmark
+    public void testBoundingBoxContainsPoint(Blackhole blackhole) {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            blackhole.consume(box.contains(xs[i], ys[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean[] testBoundingBoxContainsPoints() {
+        box.contains(xs, ys, POINT_COUNT, inside);
+        return inside;
+    }
+
+    @Benchmark
+    public void testCircleIntersectsBox(Blackhole blackhole) {
+        for (BoundingBox other : boxes) {
+            blackhole.consume(circle.intersects(other));
+        }
+    }
+
+    @Benchmark
+    public void testCircleContainsBox(Blackhole blackhole) {
+        for (BoundingBox other : boxes) {
+            blackhole.consume(circle.contains(other));
+        }
+    }
+
+}
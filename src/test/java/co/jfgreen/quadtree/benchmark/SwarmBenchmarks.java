@@ -12,7 +12,10 @@ public class SwarmBenchmarks {
     public static void main(String... args) throws RunnerException {
         Options runOptions = new OptionsBuilder().
                 include(NaiveBenchmark.class.getName()).
-                include(QuadTreeBenchmark.class.getName())
+                include(QuadTreeBenchmark.class.getName()).
+                include(LinearQuadTreeBenchmark.class.getName()).
+                include(ShapeBenchmark.class.getName()).
+                include(PrecisionBenchmark.class.getName())
                 .forks(1)
                 .threads(1)
                 .warmupTime(TimeValue.seconds(5))